@@ -57,8 +57,16 @@ public class Driver {
     }
 
     else if (args[0].equals("gui")) {
-      DungeonModel model = new Dungeon(Boolean.parseBoolean(args[1]), Integer.parseInt(args[2]),
-          Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+      DungeonModel model;
+
+      // an optional seed rebuilds the exact same dungeon
+      if (args.length > 7) {
+        model = new Dungeon(Boolean.parseBoolean(args[1]), Integer.parseInt(args[2]),
+            Integer.parseInt(args[3]), Integer.parseInt(args[4]), Long.parseLong(args[7]));
+      } else {
+        model = new Dungeon(Boolean.parseBoolean(args[1]), Integer.parseInt(args[2]),
+            Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+      }
 
       ReadonlyDungeonModel readonlyDungeonModel = model;
 
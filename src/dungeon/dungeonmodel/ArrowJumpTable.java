@@ -0,0 +1,212 @@
+package dungeon.dungeonmodel;
+
+import dungeon.player.Move;
+import java.util.Arrays;
+
+/**
+ * This class finds where an arrow following the bends of tunnels lands, given as a bitmask of open
+ * doors per cell. A cell with exactly 2 doors is a tunnel, which turns the arrow towards its other
+ * door, and every other cell is a cave, which the arrow flies straight through. The distance of a
+ * shot is the number of caves the arrow enters.
+ *
+ * <p>The flight is a chain of states, each being a cell and the direction the arrow leaves it in.
+ * Level j of the table holds the state reached after 2^j caves from every state, so the landing
+ * cell for any distance d is found with O(log d) jumps (binary lifting). Level 0 follows every
+ * tunnel only once, since all the states along a tunnel reach the same cave. The higher levels
+ * are only built when a shot is long enough to need them.
+ *
+ * <p>A flight longer than the number of states must have started going round a cycle, possibly the
+ * one of the arrow lost in the darkness, so it is cut down to the length of its cycle. No flight is
+ * then longer than the number of states, which bounds the number of levels by the logarithm of the
+ * number of states rather than of the distance. The length of a cycle is found by walking it
+ * once, the first time a flight goes round it, and kept for every state on it.
+ */
+class ArrowJumpTable {
+
+  private static final Move[] MOVE_VALUES = Move.values();
+  private static final int MOVES = MOVE_VALUES.length;
+  private static final int UNKNOWN = -2;
+  private static final int FOLLOWING = -3;
+
+  private final int rows;
+  private final int cols;
+  private final byte[] doors;
+  // state index of the arrow lost in the darkness, which only leads back to itself
+  private final int dead;
+  private final int[][] jump;
+  // length of the cycle through every state, 0 until a flight goes round the cycle
+  private int[] cycles;
+
+  /**
+   * Initializes the table over the given doors, building its first level.
+   *
+   * @param rows  number of rows in dungeon
+   * @param cols  number of columns in dungeon
+   * @param doors bitmask of open doors of every cell, see {@link Move#getMask()}
+   */
+  ArrowJumpTable(int rows, int cols, byte[] doors) {
+    this.rows = rows;
+    this.cols = cols;
+    this.doors = doors;
+    this.dead = rows * cols * MOVES;
+    // a flight is never longer than the number of states once it's cut down to its cycle
+    this.jump = new int[Integer.SIZE - Integer.numberOfLeadingZeros(dead + 1)][];
+    this.jump[0] = buildFirstLevel();
+  }
+
+  /**
+   * Finds the cell an arrow shot from the given cell lands in.
+   *
+   * @param cell      index of the cell the arrow is shot from
+   * @param direction direction the arrow is shot in
+   * @param distance  number of caves the arrow flies through
+   * @return index of the cell the arrow lands in, -1 if it hits a wall on the way
+   * @throws IllegalArgumentException if the distance is not positive
+   */
+  int land(int cell, Move direction, int distance) {
+    if (distance <= 0) {
+      throw new IllegalArgumentException("Distance must be positive");
+    }
+
+    int state = cell * MOVES + direction.ordinal();
+    int states = dead + 1;
+    if (distance > states) {
+      // after as many caves as there are states, the arrow is going round a cycle
+      state = advance(state, states);
+      if (state == dead) {
+        return -1;
+      }
+
+      distance = (distance - states) % cycleLength(state);
+    }
+
+    state = advance(state, distance);
+    return state == dead ? -1 : state / MOVES;
+  }
+
+  /**
+   * Finds the state reached after the given number of caves from the given state.
+   *
+   * @param state    state the arrow starts from
+   * @param distance number of caves
+   * @return state reached, the dead state if the arrow hits a wall on the way
+   */
+  private int advance(int state, int distance) {
+    for (int level = 0; distance != 0 && state != dead; level++, distance >>>= 1) {
+      if ((distance & 1) != 0) {
+        state = level(level)[state];
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Gets the length of the cycle through the given state, walking the cycle the first time.
+   *
+   * @param state state on a cycle
+   * @return number of caves around the cycle
+   */
+  private int cycleLength(int state) {
+    if (cycles == null) {
+      cycles = new int[dead + 1];
+    }
+
+    if (cycles[state] == 0) {
+      int[] next = level(0);
+      int cycle = 1;
+      for (int current = next[state]; current != state; current = next[current]) {
+        cycle += 1;
+      }
+      cycles[state] = cycle;
+      for (int current = next[state]; current != state; current = next[current]) {
+        cycles[current] = cycle;
+      }
+    }
+    return cycles[state];
+  }
+
+  /**
+   * Gets the given level of the table, building it and the levels below it if needed.
+   *
+   * @param level level of the table
+   * @return state reached after 2^level caves from every state
+   */
+  private int[] level(int level) {
+    if (jump[level] == null) {
+      int[] below = level(level - 1);
+      int[] next = new int[below.length];
+      for (int state = 0; state < below.length; state++) {
+        next[state] = below[below[state]];
+      }
+      jump[level] = next;
+    }
+    return jump[level];
+  }
+
+  /**
+   * Builds the state reached after one cave from every state. The states met inside a tunnel are
+   * filled in along the way, so every tunnel is followed once from each of its ends.
+   *
+   * @return state reached after one cave from every state
+   */
+  private int[] buildFirstLevel() {
+    int[] next = new int[dead + 1];
+    Arrays.fill(next, UNKNOWN);
+    next[dead] = dead;
+    int[] chain = new int[16];
+
+    for (int state = 0; state < dead; state++) {
+      if (next[state] != UNKNOWN) {
+        continue;
+      }
+
+      // follow the arrow until it enters a cave, hits a wall or meets a known state
+      int length = 0;
+      int current = state;
+      int result;
+      while (true) {
+        int cell = current / MOVES;
+        Move move = MOVE_VALUES[current % MOVES];
+        if ((doors[cell] & move.getMask()) == 0) {
+          result = dead;
+          break;
+        }
+
+        int nextCell = move.step(cell, rows, cols);
+        if (Integer.bitCount(doors[nextCell]) != 2) {
+          result = nextCell * MOVES + move.ordinal();
+          break;
+        }
+
+        if (length == chain.length) {
+          int[] larger = new int[2 * chain.length];
+          System.arraycopy(chain, 0, larger, 0, length);
+          chain = larger;
+        }
+        chain[length++] = current;
+        next[current] = FOLLOWING;
+        // a tunnel turns the arrow towards the door it didn't come in through
+        int turn = doors[nextCell] & ~move.getOpposite().getMask();
+        current = nextCell * MOVES + Integer.numberOfTrailingZeros(turn);
+        if (next[current] == FOLLOWING) {
+          // the arrow circles through tunnels without ever entering a cave
+          result = dead;
+          break;
+        }
+
+        if (next[current] != UNKNOWN) {
+          result = next[current];
+          break;
+        }
+      }
+
+      if (next[current] == UNKNOWN) {
+        next[current] = result;
+      }
+      for (int i = 0; i < length; i++) {
+        next[chain[i]] = result;
+      }
+    }
+    return next;
+  }
+}
@@ -0,0 +1,64 @@
+package dungeon.dungeonmodel;
+
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * This class draws distinct cells uniformly at random from the cells added to it, using a partial
+ * Fisher-Yates shuffle over a primitive array of cell indices. Every draw takes constant time and
+ * never has to be retried.
+ */
+class CellSampler {
+
+  private final int[] cells;
+  private int size;
+  private int drawn;
+
+  /**
+   * Initializes an empty sampler holding up to the given number of cells.
+   *
+   * @param capacity maximum number of cells
+   */
+  CellSampler(int capacity) {
+    this.cells = new int[capacity];
+    this.size = 0;
+    this.drawn = 0;
+  }
+
+  /**
+   * Adds a cell which can be drawn.
+   *
+   * @param cell index of the cell
+   */
+  void add(int cell) {
+    cells[size++] = cell;
+  }
+
+  /**
+   * Gets the number of cells which haven't been drawn yet.
+   *
+   * @return number of remaining cells
+   */
+  int remaining() {
+    return size - drawn;
+  }
+
+  /**
+   * Draws one of the remaining cells, each with the same probability.
+   *
+   * @param random source of randomness
+   * @return index of the drawn cell
+   * @throws NoSuchElementException if every cell has been drawn
+   */
+  int draw(SplittableRandom random) {
+    if (drawn == size) {
+      throw new NoSuchElementException("No cells left to draw");
+    }
+
+    int j = drawn + random.nextInt(size - drawn);
+    int cell = cells[j];
+    cells[j] = cells[drawn];
+    cells[drawn++] = cell;
+    return cell;
+  }
+}
@@ -0,0 +1,210 @@
+package dungeon.dungeonmodel;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps a bounded journal of the most recent changes to the cells of a dungeon, along
+ * with the version of the dungeon each cell in the journal last changed at. A reader remembering
+ * the version it last saw can ask for the cells changed since, in time proportional to the number
+ * of changes rather than the size of the dungeon. Once the journal has wrapped past the version of
+ * a reader, or the whole dungeon has changed, the reader has to read every cell again. Only the
+ * cells in the journal are stamped, in a small hash table, so the memory taken doesn't grow with
+ * the size of the dungeon.
+ */
+class ChangeJournal {
+
+  /**
+   * Number of changes kept in the journal.
+   */
+  static final int CAPACITY = 4096;
+
+  /**
+   * Number of slots of the hash table of stamps, twice the number of changes kept so the table is
+   * never more than half full.
+   */
+  private static final int TABLE_SIZE = 2 * CAPACITY;
+
+  private final int rows;
+  private final int cols;
+  private final int[] journal;
+  // cells of the journal, -1 for an empty slot, and the version each one last changed at
+  private final int[] stampedCells;
+  private final long[] stamps;
+  private long version;
+  private long allChangedAt;
+
+  /**
+   * Initializes the journal of a dungeon which hasn't changed yet, at version 0.
+   *
+   * @param rows number of rows in dungeon
+   * @param cols number of columns in dungeon
+   */
+  ChangeJournal(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+    this.journal = new int[CAPACITY];
+    this.stampedCells = new int[TABLE_SIZE];
+    this.stamps = new long[TABLE_SIZE];
+    Arrays.fill(this.stampedCells, -1);
+    this.version = 0;
+    this.allChangedAt = 0;
+  }
+
+  /**
+   * Records a change to the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   */
+  void touch(int cell) {
+    version += 1;
+    int entry = (int) ((version - 1) % CAPACITY);
+    if (version > CAPACITY) {
+      // the oldest change leaves the journal, along with the stamp of its cell if it's the latest
+      int oldCell = journal[entry];
+      int slot = find(oldCell);
+      if (stampedCells[slot] == oldCell && stamps[slot] == version - CAPACITY) {
+        remove(slot);
+      }
+    }
+
+    journal[entry] = cell;
+    int slot = find(cell);
+    stampedCells[slot] = cell;
+    stamps[slot] = version;
+  }
+
+  /**
+   * Records a change to every cell within the given number of rows and columns of the given cell,
+   * wrapping around the edges of the dungeon. This covers every cave whose smell changes with the
+   * otyugh in the cell.
+   *
+   * @param cell   index of the cell, {@code row * cols + col}
+   * @param radius number of rows and columns on each side of the cell
+   */
+  void touchAround(int cell, int radius) {
+    if ((2 * radius + 1) * (2 * radius + 1) >= CAPACITY) {
+      touchAll();
+      return;
+    }
+
+    int row = cell / cols;
+    int col = cell % cols;
+    int rowSpan = Math.min(2 * radius + 1, rows);
+    int colSpan = Math.min(2 * radius + 1, cols);
+    for (int i = 0; i < rowSpan; i++) {
+      for (int j = 0; j < colSpan; j++) {
+        int r = ((row - radius + i) % rows + rows) % rows;
+        int c = ((col - radius + j) % cols + cols) % cols;
+        touch(r * cols + c);
+      }
+    }
+  }
+
+  /**
+   * Records a change to every cell.
+   */
+  void touchAll() {
+    version += 1;
+    allChangedAt = version;
+  }
+
+  /**
+   * Gets the current version of the dungeon, which grows with every change.
+   *
+   * @return current version
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the version the given cell last changed at. A cell which last changed before the oldest
+   * change in the journal gets the version just before that change, which is never older than the
+   * one it actually changed at.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @return version of the cell
+   */
+  long getCellVersion(int cell) {
+    int slot = find(cell);
+    long stamp = stampedCells[slot] == cell ? stamps[slot] : Math.max(version - CAPACITY, 0);
+    return Math.max(stamp, allChangedAt);
+  }
+
+  /**
+   * Gets the cells changed after the given version, each listed once.
+   *
+   * @param since version the reader last saw
+   * @return indices of the changed cells, or null if every cell has to be read again
+   * @throws IllegalArgumentException if the version is negative or newer than the current one
+   */
+  int[] getChangedCells(long since) {
+    if (since < 0 || since > version) {
+      throw new IllegalArgumentException("Version must be between 0 and " + version);
+    }
+
+    if (since < allChangedAt || version - since > CAPACITY) {
+      return null;
+    }
+
+    int[] changed = new int[(int) (version - since)];
+    int count = 0;
+    for (long v = since + 1; v <= version; v++) {
+      int cell = journal[(int) ((v - 1) % CAPACITY)];
+      // only the latest change of a cell is listed
+      if (stamps[find(cell)] == v) {
+        changed[count++] = cell;
+      }
+    }
+    return Arrays.copyOf(changed, count);
+  }
+
+  /**
+   * Finds the slot of the hash table holding the stamp of the given cell, or the empty slot it
+   * would be put in. Collisions are resolved by probing the following slots.
+   *
+   * @param cell index of the cell
+   * @return slot of the cell
+   */
+  private int find(int cell) {
+    int slot = home(cell);
+    while (stampedCells[slot] >= 0 && stampedCells[slot] != cell) {
+      slot = (slot + 1) % TABLE_SIZE;
+    }
+    return slot;
+  }
+
+  /**
+   * Empties the given slot of the hash table, moving back the stamps probed past it so that every
+   * stamp can still be found.
+   *
+   * @param slot slot to empty
+   */
+  private void remove(int slot) {
+    int next = slot;
+    while (true) {
+      next = (next + 1) % TABLE_SIZE;
+      if (stampedCells[next] < 0) {
+        break;
+      }
+      // a stamp can only move back if its home slot isn't between the empty slot and itself
+      int home = home(stampedCells[next]);
+      if ((next - home + TABLE_SIZE) % TABLE_SIZE >= (next - slot + TABLE_SIZE) % TABLE_SIZE) {
+        stampedCells[slot] = stampedCells[next];
+        stamps[slot] = stamps[next];
+        slot = next;
+      }
+    }
+    stampedCells[slot] = -1;
+  }
+
+  /**
+   * Gets the slot of the hash table the stamp of the given cell is probed from.
+   *
+   * @param cell index of the cell
+   * @return home slot of the cell
+   */
+  private int home(int cell) {
+    return ((cell * 0x9E3779B9) >>> 16) % TABLE_SIZE;
+  }
+}
@@ -0,0 +1,1284 @@
+package dungeon.dungeonmodel;
+
+import dungeon.kruskal.DungeonGenerator;
+import dungeon.kruskal.KruskalImpl;
+import dungeon.location.Corridor;
+import dungeon.location.Location;
+import dungeon.location.SmellField;
+import dungeon.location.Tunnel;
+import dungeon.otyugh.Otyugh;
+import dungeon.player.ArrowFlight;
+import dungeon.player.ArrowPath;
+import dungeon.player.Move;
+import dungeon.player.Player;
+import dungeon.player.PlayerImpl;
+import dungeon.position.Position;
+import dungeon.position.PositionImpl;
+import dungeon.treasure.Treasure;
+import dungeon.treasure.TreasureKind;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class implements a dungeon model which stores its grid as primitive arrays instead of a
+ * grid of cave and tunnel objects. Each cell takes 7 bytes: a bitmask of open doors, the number of
+ * arrows in the cave, the number of each kind of treasure packed into 5 bits each, the health of its
+ * otyugh, and the arrows lying in its east and south tunnels packed into 4 bits each.
+ *
+ * <p>A {@link DungeonSnapshot} packs every cell into 4 more bytes, which are kept for as long as the
+ * snapshot is, e.g. by a view drawing the dungeon. Later snapshots share those bytes for every row
+ * which didn't change, so a reader taking a snapshot per frame keeps the dungeon at about 11 bytes
+ * per cell.
+ *
+ * <p>The tunnel between two caves is stored once, so the arrows in it are shared by both of its
+ * directions. {@link Location}, {@link Tunnel} and {@link Otyugh} objects are only created on demand
+ * as views over the arrays for callers that need them, e.g. the player.
+ */
+public class CompactDungeon implements DungeonModel {
+
+  // order in which a cave describes its treasure
+  private static final TreasureKind[] DESCRIPTION_ORDER = {TreasureKind.SAPPHIRE,
+      TreasureKind.DIAMOND, TreasureKind.RUBY};
+  private static final int TREASURE_BITS = 5;
+  private static final int MAX_TREASURE = (1 << TREASURE_BITS) - 1;
+  private static final int MAX_TUNNEL_ARROWS = 15;
+  private static final byte HEALTHY = 2;
+  private static final byte HIT = 1;
+  private static final boolean DEBUG = Boolean.getBoolean("dungeon.debug");
+
+  private final int rows;
+  private final int cols;
+  private final boolean isNonWrapping;
+  private final int interconnectivity;
+  private final long seed;
+  private final SplittableRandom random;
+  private final byte[] doors;
+  private final short[] arrows;
+  private final short[] treasure;
+  private final byte[] otyughHealth;
+  private final byte[] tunnelArrows;
+  private final int[] treasureTotals;
+  private int caveArrowTotal;
+  private int tunnelArrowTotal;
+  private SmellField smellField;
+  private ArrowFlight arrowFlight;
+  private ArrowJumpTable arrowTable;
+  private final SnapshotTracker snapshots;
+  private final ChangeJournal changes;
+  private int playerCell;
+  private final BitSet visited;
+  private int percentageItems;
+  private int otyughs;
+  private int start;
+  private int end;
+  private Player player;
+
+  /**
+   * Initializes the bare dungeon with certain characteristics and a random seed.
+   *
+   * @param nonWrapping       whether the dungeon is a non-wrapping dungeon or not
+   * @param rows              number of rows in the dungeon
+   * @param cols              number of columns in the dungeon
+   * @param interconnectivity the degree of interconnectivity of dungeon. It's 0 for non-wrapping
+   *                          dungeons while > 0 for wrapping dungeons.
+   */
+  public CompactDungeon(boolean nonWrapping, int rows, int cols, int interconnectivity) {
+    this(nonWrapping, rows, cols, interconnectivity, new SplittableRandom().nextLong());
+  }
+
+  /**
+   * Initializes the bare dungeon with certain characteristics, drawing all its randomness from a
+   * single random source created from the given seed.
+   *
+   * @param nonWrapping       whether the dungeon is a non-wrapping dungeon or not
+   * @param rows              number of rows in the dungeon
+   * @param cols              number of columns in the dungeon
+   * @param interconnectivity the degree of interconnectivity of dungeon. It's 0 for non-wrapping
+   *                          dungeons while > 0 for wrapping dungeons.
+   * @param seed              seed of the random source of the dungeon
+   */
+  public CompactDungeon(boolean nonWrapping, int rows, int cols, int interconnectivity,
+      long seed) {
+    this(nonWrapping, rows, cols, interconnectivity, seed, new KruskalImpl());
+  }
+
+  /**
+   * Initializes the bare dungeon with certain characteristics, laying out its tunnels with the
+   * given generator.
+   *
+   * @param nonWrapping       whether the dungeon is a non-wrapping dungeon or not
+   * @param rows              number of rows in the dungeon
+   * @param cols              number of columns in the dungeon
+   * @param interconnectivity the degree of interconnectivity of dungeon. It's 0 for non-wrapping
+   *                          dungeons while > 0 for wrapping dungeons.
+   * @param seed              seed of the random source of the dungeon
+   * @param generator         generator of the tunnels of the dungeon
+   */
+  public CompactDungeon(boolean nonWrapping, int rows, int cols, int interconnectivity,
+      long seed, DungeonGenerator generator) {
+    if (generator == null) {
+      throw new IllegalArgumentException("Generator cannot be null");
+    }
+
+    if (rows < 0) {
+      throw new IllegalArgumentException("Rows cannot be negative");
+    }
+
+    if (cols < 0) {
+      throw new IllegalArgumentException("Columns cannot be negative");
+    }
+
+    if (interconnectivity < 0) {
+      throw new IllegalArgumentException("Interconnectivity cannot be negative");
+    }
+
+    if (rows < 5 && cols < 5) {
+      throw new IllegalArgumentException("Row or column values must be >=5 since the distance "
+          + "between start and end location of dungeon must be >=5");
+    }
+
+    if (!(nonWrapping)) {
+      if (interconnectivity == 0) {
+        throw new IllegalArgumentException("Wrapping Dungeon cannot have interconnectivity = 0");
+      }
+    } else {
+      if (interconnectivity > 0) {
+        throw new IllegalArgumentException(
+            "Non-Wrapping Dungeon cannot have interconnectivity > 0");
+      }
+    }
+
+    this.rows = rows;
+    this.cols = cols;
+    this.interconnectivity = interconnectivity;
+    this.isNonWrapping = nonWrapping;
+    this.seed = seed;
+    this.random = new SplittableRandom(seed);
+    this.doors = new byte[rows * cols];
+    this.arrows = new short[rows * cols];
+    this.treasure = new short[rows * cols];
+    this.otyughHealth = new byte[rows * cols];
+    this.tunnelArrows = new byte[rows * cols];
+    this.snapshots = new SnapshotTracker(rows, cols);
+    this.changes = new ChangeJournal(rows, cols);
+    this.playerCell = -1;
+    this.visited = new BitSet(rows * cols);
+    this.treasureTotals = new int[TreasureKind.values().length];
+
+    generator.generate(rows, cols, nonWrapping, interconnectivity, random, (cell, direction) -> {
+      doors[cell] |= direction.getMask();
+      doors[direction.step(cell, rows, cols)] |= direction.getOpposite().getMask();
+    });
+    this.smellField = new SmellField(rows, cols, doors, 2);
+    this.arrowFlight = ArrowFlight.STRAIGHT;
+    placeStartAndEnd(false);
+  }
+
+  /**
+   * Gets a view of the location at the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @return view of the location
+   */
+  private Location location(int cell) {
+    return new CompactCave(cell);
+  }
+
+  /**
+   * Gets the index of the cell of the given location of this dungeon.
+   *
+   * @param location location of this dungeon
+   * @return index of the cell
+   * @throws IllegalArgumentException if the location doesn't belong to this dungeon
+   */
+  private int cellOf(Location location) {
+    if (!(location instanceof CompactCave) || ((CompactCave) location).owner() != this) {
+      throw new IllegalArgumentException("Location doesn't belong to this dungeon");
+    }
+    return ((CompactCave) location).cell;
+  }
+
+  /**
+   * Sets the health of the otyugh in the given cell, keeping the smell field up to date when an
+   * otyugh appears or dies.
+   *
+   * @param cell   index of the cell
+   * @param health health of the otyugh, 0 for no otyugh
+   */
+  private void setOtyughHealth(int cell, byte health) {
+    if (otyughHealth[cell] == 0 && health != 0) {
+      smellField.addOtyugh(cell);
+      otyughChanged(cell);
+    } else if (otyughHealth[cell] != 0 && health == 0) {
+      smellField.removeOtyugh(cell);
+      otyughChanged(cell);
+    }
+    otyughHealth[cell] = health;
+  }
+
+  /**
+   * Gets the index of the cell which stores the arrows of the tunnel leading from the given cell in
+   * the given direction. Tunnels leading east or south are stored at their source cell while tunnels
+   * leading west or north are stored at their destination cell.
+   *
+   * @param cell      index of the source cell
+   * @param direction direction of the tunnel
+   * @return index of the cell storing the tunnel
+   */
+  private int tunnelCell(int cell, Move direction) {
+    if (direction == Move.EAST || direction == Move.SOUTH) {
+      return cell;
+    }
+    return direction.step(cell, rows, cols);
+  }
+
+  /**
+   * Gets the bit offset of the arrows of a tunnel leading in the given direction.
+   *
+   * @param direction direction of the tunnel
+   * @return 0 for horizontal tunnels and 4 for vertical tunnels
+   */
+  private int tunnelShift(Move direction) {
+    return direction == Move.EAST || direction == Move.WEST ? 0 : 4;
+  }
+
+  /**
+   * Gets the number of arrows in the tunnel leading from the given cell in the given direction.
+   *
+   * @param cell      index of the source cell
+   * @param direction direction of the tunnel
+   * @return number of arrows in the tunnel
+   */
+  private int getTunnelArrows(int cell, Move direction) {
+    return (tunnelArrows[tunnelCell(cell, direction)] >>> tunnelShift(direction)) & 0xF;
+  }
+
+  /**
+   * Sets the number of arrows in the tunnel leading from the given cell in the given direction.
+   *
+   * @param cell      index of the source cell
+   * @param direction direction of the tunnel
+   * @param count     number of arrows, at most 15
+   */
+  private void setTunnelArrows(int cell, Move direction, int count) {
+    int index = tunnelCell(cell, direction);
+    int shift = tunnelShift(direction);
+    tunnelArrowTotal += count - ((tunnelArrows[index] >>> shift) & 0xF);
+    tunnelArrows[index] = (byte) ((tunnelArrows[index] & ~(0xF << shift)) | (count << shift));
+  }
+
+  /**
+   * Gets the number of treasures of the given kind in the given cell.
+   *
+   * @param cell index of the cell
+   * @param kind kind of treasure
+   * @return number of treasures of the kind
+   */
+  private int getTreasureAt(int cell, TreasureKind kind) {
+    return (treasure[cell] >>> (kind.ordinal() * TREASURE_BITS)) & MAX_TREASURE;
+  }
+
+  /**
+   * Sets the number of treasures of the given kind in the given cell.
+   *
+   * @param cell  index of the cell
+   * @param kind  kind of treasure
+   * @param count number of treasures, at most 31
+   */
+  private void setTreasureAt(int cell, TreasureKind kind, int count) {
+    int shift = kind.ordinal() * TREASURE_BITS;
+    treasureTotals[kind.ordinal()] += count - getTreasureAt(cell, kind);
+    treasure[cell] = (short) ((treasure[cell] & ~(MAX_TREASURE << shift)) | (count << shift));
+    cellChanged(cell);
+  }
+
+  @Override
+  public String getState() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeState(sb);
+    } catch (IOException ioException) {
+      // appending to a string builder never fails
+      throw new IllegalStateException(ioException);
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void writeState(Appendable out) throws IOException {
+    writeState(out, 0, this.rows);
+  }
+
+  @Override
+  public void writeState(Appendable out, int fromRow, int toRow) throws IOException {
+    checkRows(fromRow, toRow);
+    for (int cell = fromRow * cols; cell < toRow * cols; cell++) {
+      out.append(location(cell).toString());
+      out.append("\n");
+    }
+  }
+
+  @Override
+  public void writeCompressedState(OutputStream out, int fromRow, int toRow)
+      throws IOException {
+    checkRows(fromRow, toRow);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+    writeState(writer, fromRow, toRow);
+    writer.flush();
+    gzip.finish();
+  }
+
+  /**
+   * Checks if the given range of rows is within the dungeon.
+   *
+   * @param fromRow first row of the range
+   * @param toRow   row after the last row of the range
+   * @throws IllegalArgumentException if the range is not within the dungeon
+   */
+  private void checkRows(int fromRow, int toRow) {
+    if (fromRow < 0 || toRow > this.rows || fromRow > toRow) {
+      throw new IllegalArgumentException("Rows must be within 0 and " + this.rows);
+    }
+  }
+
+  @Override
+  public void addTreasure(int percentage) {
+    if (percentage < 0) {
+      throw new IllegalArgumentException("Percentage cannot be negative");
+    }
+    this.percentageItems = percentage;
+
+    int actualNumber = (percentage * this.rows * this.cols) / 100;
+
+    for (int i = 0; i < actualNumber; i++) {
+      int cell = random.nextInt(rows * cols);
+      TreasureKind kind = TreasureKind.values()[random.nextInt(TreasureKind.values().length)];
+
+      // a full cave passes the treasure on to the next cave
+      int tries = 0;
+      while (getTreasureAt(cell, kind) == MAX_TREASURE) {
+        if (++tries > rows * cols) {
+          throw new IllegalStateException("Dungeon cannot hold more treasure");
+        }
+        cell = (cell + 1) % (rows * cols);
+      }
+      setTreasureAt(cell, kind, getTreasureAt(cell, kind) + 1);
+
+      // deciding between adding to a cave or one of its tunnels, a full tunnel drops it in the cave
+      if (random.nextBoolean()) {
+        int choice = random.nextInt(Integer.bitCount(doors[cell]));
+        for (Move move : Move.values()) {
+          if ((doors[cell] & move.getMask()) != 0 && choice-- == 0) {
+            int count = getTunnelArrows(cell, move);
+            if (count < MAX_TUNNEL_ARROWS) {
+              setTunnelArrows(cell, move, count + 1);
+            } else {
+              location(cell).addArrow();
+            }
+            break;
+          }
+        }
+      } else {
+        location(cell).addArrow();
+      }
+    }
+  }
+
+  @Override
+  public void addTreasure(Treasure treasure, Location location) {
+    location.addTreasure(treasure);
+  }
+
+  @Override
+  public void addOtyughs(int number) {
+    if (number <= 0 || number > this.rows * this.cols - 1) {
+      throw new IllegalArgumentException("Number of Otyughs must be > 0 and <= " +
+          (this.rows * this.cols - 1));
+    }
+
+    // the remaining otyughs go to distinct free caves other than the start and end location
+    CellSampler freeCaves = new CellSampler(rows * cols);
+    for (int cell = 0; cell < rows * cols; cell++) {
+      if (cell != start && cell != end && otyughHealth[cell] == 0) {
+        freeCaves.add(cell);
+      }
+    }
+
+    if (freeCaves.remaining() < number - 1) {
+      throw new IllegalArgumentException("Only " + freeCaves.remaining()
+          + " caves are free for the Otyughs");
+    }
+
+    this.otyughs = number;
+    // add an otyugh at the end location
+    location(end).addOtyugh(null);
+
+    for (int i = 0; i < number - 1; i++) {
+      setOtyughHealth(freeCaves.draw(random), HEALTHY);
+    }
+  }
+
+  @Override
+  public void playerPickupItem(String item) {
+    try {
+      if (item.equalsIgnoreCase("Arrow")) {
+        this.player.pickupArrow();
+      } else if (item.equalsIgnoreCase("Ruby") || item.equalsIgnoreCase("Diamond")
+          || item.equalsIgnoreCase("Sapphire")) {
+        this.player.pickupTreasure(item);
+      } else {
+        throw new IllegalStateException("Invalid Item");
+      }
+    } catch (NoSuchElementException noSuchElementException) {
+      throw new NoSuchElementException("Item not available");
+    }
+  }
+
+  @Override
+  public String playerShootArrow(int distance, String direction) {
+    if (distance <= 0) {
+      throw new IllegalArgumentException("distance must be > 0");
+    }
+
+    Move move;
+    switch (direction) {
+      case "N" :
+        move = Move.NORTH;
+        break;
+      case "S" :
+        move = Move.SOUTH;
+        break;
+      case "E" :
+        move = Move.EAST;
+        break;
+      case "W" :
+        move = Move.WEST;
+        break;
+      default : throw new IllegalArgumentException("Invalid direction");
+    }
+
+    try {
+      return this.player.shoot(distance, move);
+    } catch (IllegalStateException illegalStateException) {
+      throw new IllegalStateException("No arrows");
+    } catch (NoSuchElementException noSuchElementException) {
+      throw new NoSuchElementException("Arrow direction not possible");
+    }
+  }
+
+  @Override
+  public void enterPlayer() {
+    this.player = new PlayerImpl("Zeus", location(start), this.random.split());
+    this.player.setArrowPath(arrowPath());
+    this.visited.clear();
+    playerMoved(this.start);
+    this.player.setMoveListener(location -> playerMoved(cellOf(location)));
+  }
+
+  @Override
+  public void placeStartAndEnd(boolean maximallyDistant) {
+    if (this.player != null || this.otyughs > 0) {
+      throw new IllegalStateException(
+          "Start and end can only be placed before the player enters and otyughs are added");
+    }
+
+    // the search is only kept for as long as a query runs, so it holds no memory in between
+    GridSearch search = new GridSearch(rows, cols, doors);
+    int[] startAndEnd = new StartEndPlacer(search, rows * cols, random).place(maximallyDistant);
+    this.start = startAndEnd[0];
+    this.end = startAndEnd[1];
+  }
+
+  @Override
+  public void setScentRadius(int radius) {
+    SmellField field = new SmellField(rows, cols, doors, radius);
+    for (int cell = 0; cell < rows * cols; cell++) {
+      if (otyughHealth[cell] != 0) {
+        field.addOtyugh(cell);
+      }
+    }
+    this.smellField = field;
+    allChanged();
+  }
+
+  @Override
+  public void setArrowFlight(ArrowFlight arrowFlight) {
+    if (arrowFlight == null) {
+      throw new IllegalArgumentException("Arrow flight cannot be null");
+    }
+    this.arrowFlight = arrowFlight;
+    if (this.player != null) {
+      this.player.setArrowPath(arrowPath());
+    }
+  }
+
+  @Override
+  public ArrowFlight getArrowFlight() {
+    return this.arrowFlight;
+  }
+
+  /**
+   * Gets the path the arrows of the player follow for the current arrow flight.
+   *
+   * @return path of the arrows, null for arrows flying straight
+   */
+  private ArrowPath arrowPath() {
+    if (this.arrowFlight == ArrowFlight.CURVED) {
+      return this::landArrow;
+    }
+    return null;
+  }
+
+  /**
+   * Finds the location an arrow following the bends of tunnels lands in, building the jump table
+   * of the dungeon on the first shot.
+   *
+   * @param from      location the arrow is shot from
+   * @param direction direction the arrow is shot in
+   * @param distance  the given distance i.e. the number of caves
+   * @return location the arrow lands in, or null if the arrow is lost in the darkness
+   */
+  private Location landArrow(Location from, Move direction, int distance) {
+    if (this.arrowTable == null) {
+      this.arrowTable = new ArrowJumpTable(rows, cols, doors);
+    }
+    int cell = this.arrowTable.land(cellOf(from), direction, distance);
+    if (cell < 0) {
+      return null;
+    }
+    return location(cell);
+  }
+
+  @Override
+  public int getScentRadius() {
+    return this.smellField.getRadius();
+  }
+
+  @Override
+  public int getSmellIntensity(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return this.smellField.getIntensity(row * cols + col);
+  }
+
+  @Override
+  public String getPlayerDescription() {
+    if (this.player == null) {
+      throw new IllegalStateException(
+          "Player not created!! Please invoke enterPlayer method first");
+    }
+    return this.player.getDescription();
+  }
+
+  @Override
+  public String getPlayerLocationDescription() {
+    return this.player.getLocationDescription();
+  }
+
+  @Override
+  public void movePlayer(Location location) {
+    cellOf(location);
+    this.player.move(location);
+  }
+
+  @Override
+  public String movePlayer(String direction) {
+    try {
+      return this.player.move(direction);
+    } catch (IllegalStateException illegalStateException) {
+      throw new IllegalStateException("Player is dead");
+    }
+  }
+
+  @Override
+  public void playerPickupTreasure() {
+    this.player.pickupTreasure();
+  }
+
+  @Override
+  public List<Location> getBFSTraversal() {
+    GridSearch search = new GridSearch(rows, cols, doors);
+    int visitedCount = search.search(start, end);
+    List<Location> traversal = new ArrayList<>(visitedCount);
+    for (int i = 0; i < visitedCount; i++) {
+      traversal.add(location(search.getVisited(i)));
+    }
+    return traversal;
+  }
+
+  @Override
+  public List<Location> getShortestPath() {
+    GridSearch search = new GridSearch(rows, cols, doors);
+    search.search(start, end);
+    int[] path = search.getPath(end);
+    List<Location> locations = new ArrayList<>(path.length);
+    for (int cell : path) {
+      locations.add(location(cell));
+    }
+    return locations;
+  }
+
+  @Override
+  public int getShortestPathDistance() {
+    GridSearch search = new GridSearch(rows, cols, doors);
+    search.search(start, end);
+    return search.getPath(end).length - 1;
+  }
+
+  @Override
+  public Location getStartState() {
+    return location(start);
+  }
+
+  @Override
+  public Location getEndState() {
+    return location(end);
+  }
+
+  /**
+   * Get the location grid of dungeon. The grid is made up of views created for this call, which
+   * takes memory proportional to the size of the dungeon.
+   *
+   * @return location grid of dungeon
+   */
+  @Override
+  public Location[][] getLocationGrid() {
+    Location[][] grid = new Location[rows][cols];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        grid[i][j] = location(i * cols + j);
+      }
+    }
+    return grid;
+  }
+
+  /**
+   * Records a change to the cave of the given cell, for the next snapshot and the change journal.
+   *
+   * @param cell index of the cell
+   */
+  private void cellChanged(int cell) {
+    snapshots.markCell(cell);
+    changes.touch(cell);
+  }
+
+  /**
+   * Records an otyugh appearing or dying in the given cell, which changes the smell of every cave
+   * within the scent radius.
+   *
+   * @param cell index of the cell
+   */
+  private void otyughChanged(int cell) {
+    snapshots.markAround(cell, smellField.getRadius());
+    changes.touchAround(cell, smellField.getRadius());
+  }
+
+  /**
+   * Records a change to every cave of the dungeon.
+   */
+  private void allChanged() {
+    snapshots.markAll();
+    changes.touchAll();
+  }
+
+  /**
+   * Records the player moving to the given cell, which changes the cells it left and entered and
+   * marks the cell it entered as visited.
+   *
+   * @param cell index of the cell the player moved to
+   */
+  private void playerMoved(int cell) {
+    if (this.playerCell >= 0) {
+      changes.touch(this.playerCell);
+    }
+    changes.touch(cell);
+    this.playerCell = cell;
+    this.visited.set(cell);
+  }
+
+  @Override
+  public long getVersion() {
+    return changes.getVersion();
+  }
+
+  @Override
+  public long getCellVersion(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return changes.getCellVersion(row * cols + col);
+  }
+
+  @Override
+  public int[] getChangedCells(long since) {
+    return changes.getChangedCells(since);
+  }
+
+  @Override
+  public boolean isVisited(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return this.visited.get(row * cols + col);
+  }
+
+  @Override
+  public BitSet getVisitedCells() {
+    return (BitSet) this.visited.clone();
+  }
+
+  @Override
+  public DungeonSnapshot snapshot() {
+    return snapshots.snapshot(this::packCell, this.playerCell);
+  }
+
+  /**
+   * Packs the state of the cave of the given cell for a snapshot.
+   *
+   * @param cell index of the cell
+   * @return packed cave
+   */
+  private int packCell(int cell) {
+    int packed = DungeonSnapshot.pack(doors[cell], otyughHealth[cell] != 0, arrows[cell],
+        SmellField.level(smellField.getIntensity(cell), smellField.getRadius()));
+    for (TreasureKind kind : TreasureKind.values()) {
+      packed = DungeonSnapshot.withTreasure(packed, kind, getTreasureAt(cell, kind));
+    }
+    return packed;
+  }
+
+  @Override
+  public int getRows() {
+    return this.rows;
+  }
+
+  @Override
+  public int getColumns() {
+    return this.cols;
+  }
+
+  @Override
+  public int getInterconnectivity() {
+    return this.interconnectivity;
+  }
+
+  @Override
+  public Player getPlayer() {
+    return this.player;
+  }
+
+  @Override
+  public void assignOtyugh(Location location) {
+    location.addOtyugh(null);
+  }
+
+  @Override
+  public int getTreasureCount() {
+    checkTotals();
+    int treasureCount = 0;
+    for (int count : this.treasureTotals) {
+      treasureCount += count;
+    }
+    return treasureCount;
+  }
+
+  @Override
+  public int getTreasureCount(TreasureKind kind) {
+    checkTotals();
+    return this.treasureTotals[kind.ordinal()];
+  }
+
+  @Override
+  public int getArrowCount() {
+    checkTotals();
+    return this.caveArrowTotal + this.tunnelArrowTotal;
+  }
+
+  @Override
+  public int getCaveArrowCount() {
+    checkTotals();
+    return this.caveArrowTotal;
+  }
+
+  @Override
+  public int getTunnelArrowCount() {
+    checkTotals();
+    return this.tunnelArrowTotal;
+  }
+
+  @Override
+  public int getPlayerArrowCount() {
+    if (this.player == null) {
+      return 0;
+    }
+    return this.player.getArrows();
+  }
+
+  /**
+   * Compares the running totals of treasure and arrows against a full scan of the arrays when the
+   * {@code dungeon.debug} system property is true.
+   *
+   * @throws IllegalStateException if a running total doesn't match the scan
+   */
+  private void checkTotals() {
+    if (!(DEBUG)) {
+      return;
+    }
+
+    int caveArrows = 0;
+    int tunnelArrowCount = 0;
+    for (int cell = 0; cell < rows * cols; cell++) {
+      caveArrows += arrows[cell];
+      tunnelArrowCount += (tunnelArrows[cell] & 0xF) + ((tunnelArrows[cell] >>> 4) & 0xF);
+    }
+
+    for (TreasureKind kind : TreasureKind.values()) {
+      int count = 0;
+      for (int cell = 0; cell < rows * cols; cell++) {
+        count += getTreasureAt(cell, kind);
+      }
+      if (count != this.treasureTotals[kind.ordinal()]) {
+        throw new IllegalStateException("Total of " + kind + " is "
+            + this.treasureTotals[kind.ordinal()] + " but " + count + " were found");
+      }
+    }
+
+    if (caveArrows != this.caveArrowTotal || tunnelArrowCount != this.tunnelArrowTotal) {
+      throw new IllegalStateException("Total of arrows is " + this.caveArrowTotal + " in caves and "
+          + this.tunnelArrowTotal + " in tunnels but " + caveArrows + " and " + tunnelArrowCount
+          + " were found");
+    }
+  }
+
+  @Override
+  public void addArrow(Location location) {
+    location.addArrow();
+  }
+
+  @Override
+  public long getSeed() {
+    return this.seed;
+  }
+
+  @Override
+  public boolean isNonWrapping() {
+    return this.isNonWrapping;
+  }
+
+  @Override
+  public int getPercentageOfItems() {
+    return this.percentageItems;
+  }
+
+  @Override
+  public int getOtyughCount() {
+    return this.otyughs;
+  }
+
+  /**
+   * This class is a view of a cave of the compact dungeon. Two views of the same cell are equal.
+   */
+  private class CompactCave implements Location {
+
+    private final int cell;
+
+    private CompactCave(int cell) {
+      this.cell = cell;
+    }
+
+    private CompactDungeon owner() {
+      return CompactDungeon.this;
+    }
+
+    @Override
+    public void addTreasure(Treasure treasure) {
+      TreasureKind kind = TreasureKind.of(treasure);
+      int count = getTreasureAt(cell, kind);
+      if (count == MAX_TREASURE) {
+        throw new IllegalStateException("Cave cannot hold more " + treasure);
+      }
+      setTreasureAt(cell, kind, count + 1);
+    }
+
+    @Override
+    public Location getNeighbor(Move move) {
+      if ((doors[cell] & move.getMask()) == 0) {
+        return null;
+      }
+      return location(move.step(cell, rows, cols));
+    }
+
+    @Override
+    public Tunnel getTunnel(Move move) {
+      if ((doors[cell] & move.getMask()) == 0) {
+        return null;
+      }
+      return new CompactTunnel(this, move);
+    }
+
+    @Override
+    public int getDoorMask() {
+      return doors[cell];
+    }
+
+    @Override
+    public Location getNextLocation(Move move) {
+      if ((doors[cell] & move.getMask()) == 0) {
+        throw new IllegalArgumentException("Move: " + move.toString() + " not possible for Cave: ("
+            + cell / cols + "," + cell % cols + ")");
+      }
+      return location(move.step(cell, rows, cols));
+    }
+
+    @Override
+    public List<Treasure> getTreasure() {
+      List<Treasure> treasureList = new ArrayList<>();
+      for (TreasureKind kind : TreasureKind.values()) {
+        for (int i = getTreasureAt(cell, kind); i > 0; i--) {
+          treasureList.add(kind);
+        }
+      }
+      return treasureList;
+    }
+
+    @Override
+    public int getTreasureCount(TreasureKind kind) {
+      return getTreasureAt(cell, kind);
+    }
+
+    @Override
+    public Position getPosition() {
+      return new PositionImpl(cell / cols, cell % cols);
+    }
+
+    @Override
+    public List<Tunnel> getTunnel() {
+      List<Tunnel> tunnelList = new ArrayList<>();
+      for (Move move : Move.values()) {
+        if ((doors[cell] & move.getMask()) != 0) {
+          tunnelList.add(new CompactTunnel(this, move));
+        }
+      }
+      return tunnelList;
+    }
+
+    @Override
+    public void addTunnel(Tunnel tunnel) {
+      Move direction = tunnel.getDirection();
+      doors[cell] |= direction.getMask();
+      doors[direction.step(cell, rows, cols)] |= direction.getOpposite().getMask();
+    }
+
+    @Override
+    public List<String> getPossibleMoves() {
+      List<String> moves = new ArrayList<>();
+      for (Move move : Move.values()) {
+        if ((doors[cell] & move.getMask()) != 0) {
+          moves.add(move.toString());
+        }
+      }
+      return moves;
+    }
+
+    @Override
+    public List<Treasure> pickupTreasure() {
+      List<Treasure> treasures = getTreasure();
+      for (TreasureKind kind : TreasureKind.values()) {
+        setTreasureAt(cell, kind, 0);
+      }
+      return treasures;
+    }
+
+    @Override
+    public Treasure pickupTreasure(String treasure) {
+      if (CompactDungeon.this.treasure[cell] == 0) {
+        throw new IllegalArgumentException("No treasure available");
+      }
+
+      TreasureKind kind;
+      try {
+        kind = TreasureKind.of(treasure);
+      } catch (IllegalArgumentException illegalArgumentException) {
+        throw new IllegalArgumentException("Item not available");
+      }
+
+      int count = getTreasureAt(cell, kind);
+      if (count == 0) {
+        throw new IllegalArgumentException("Item not available");
+      }
+      setTreasureAt(cell, kind, count - 1);
+      return kind;
+    }
+
+    @Override
+    public void addOtyugh(Otyugh otyugh) {
+      if (otyughHealth[cell] != 0) {
+        throw new IllegalStateException("There's already an otyugh in this cave");
+      }
+      setOtyughHealth(cell, otyugh != null && otyugh.isHit() ? HIT : HEALTHY);
+    }
+
+    @Override
+    public Otyugh getOtyugh() {
+      if (otyughHealth[cell] == 0) {
+        return null;
+      }
+      return new CompactOtyugh(cell);
+    }
+
+    @Override
+    public int pickupArrow() {
+      if (arrows[cell] == 0) {
+        throw new NoSuchElementException("No arrows available");
+      }
+      int temp = arrows[cell];
+      arrows[cell] = 0;
+      caveArrowTotal -= temp;
+      cellChanged(cell);
+      return temp;
+    }
+
+    @Override
+    public void addArrow() {
+      if (arrows[cell] == Short.MAX_VALUE) {
+        throw new IllegalStateException("Cave cannot hold more arrows");
+      }
+      arrows[cell] += 1;
+      caveArrowTotal += 1;
+      cellChanged(cell);
+    }
+
+    @Override
+    public String possibleMovesHelper() {
+      StringBuilder sb = new StringBuilder();
+      for (Move move : Move.values()) {
+        if ((doors[cell] & move.getMask()) != 0) {
+          if (sb.length() != 0) {
+            sb.append(",");
+          }
+          sb.append(" ").append(move.toString().charAt(0));
+        }
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public void removeOtyugh() {
+      setOtyughHealth(cell, (byte) 0);
+    }
+
+    @Override
+    public int getArrowCount() {
+      return arrows[cell];
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(SmellField.describe(smellField.getIntensity(cell), smellField.getRadius()));
+      sb.append("\nYou are in a cave");
+
+      if (treasure[cell] != 0 || arrows[cell] > 0) {
+        sb.append("\nYou find");
+
+        if (arrows[cell] > 0) {
+          sb.append(" ").append(arrows[cell]).append(" Arrow");
+        }
+
+        for (TreasureKind kind : DESCRIPTION_ORDER) {
+          int count = getTreasureAt(cell, kind);
+          if (count > 0) {
+            sb.append(" ").append(count).append(" ").append(kind);
+          }
+        }
+        sb.append(" here");
+      }
+
+      sb.append("\nDoors lead to the").append(possibleMovesHelper());
+      return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CompactCave)) {
+        return false;
+      }
+      CompactCave other = (CompactCave) o;
+      return other.owner() == owner() && other.cell == cell;
+    }
+
+    @Override
+    public int hashCode() {
+      return cell;
+    }
+  }
+
+  /**
+   * This class is a view of one direction of a tunnel of the compact dungeon. The arrows are shared
+   * with the view of the opposite direction.
+   */
+  private class CompactTunnel extends Tunnel {
+
+    private final int cell;
+
+    private CompactTunnel(CompactCave source, Move direction) {
+      super(source, location(direction.step(source.cell, rows, cols)), direction, null);
+      this.cell = source.cell;
+    }
+
+    @Override
+    public Corridor getCorridor() {
+      return new CompactCorridor(this);
+    }
+
+    @Override
+    public String toString() {
+      int count = getArrowCount();
+      if (count != 0) {
+        return "\nYou picked up " + count + " arrows\n";
+      }
+      return "";
+    }
+
+    @Override
+    public int pickupArrow() {
+      int temp = getArrowCount();
+      setTunnelArrows(cell, getDirection(), 0);
+      return temp;
+    }
+
+    @Override
+    public void addArrow() {
+      int count = getArrowCount();
+      if (count == MAX_TUNNEL_ARROWS) {
+        throw new IllegalStateException("Tunnel cannot hold more arrows");
+      }
+      setTunnelArrows(cell, getDirection(), count + 1);
+    }
+
+    @Override
+    public int getArrowCount() {
+      return getTunnelArrows(cell, getDirection());
+    }
+  }
+
+  /**
+   * This class is a view of a tunnel of the compact dungeon as a corridor, backed by the arrows of
+   * the tunnel. Views of the same tunnel are equal whichever direction they were taken from.
+   */
+  private class CompactCorridor extends Corridor {
+
+    private final CompactTunnel tunnel;
+
+    private CompactCorridor(CompactTunnel tunnel) {
+      super(tunnel.getSource(), tunnel.getDestination(), tunnel.getDirection());
+      this.tunnel = tunnel;
+    }
+
+    @Override
+    public Tunnel towards(Move move) {
+      if (move == tunnel.getDirection()) {
+        return tunnel;
+      }
+      if (move == tunnel.getDirection().getOpposite()) {
+        return tunnel.getDestination().getTunnel(move);
+      }
+      throw new IllegalArgumentException("Corridor doesn't lead " + move);
+    }
+
+    @Override
+    protected int getArrowCount() {
+      return tunnel.getArrowCount();
+    }
+
+    @Override
+    protected void addArrow() {
+      tunnel.addArrow();
+    }
+
+    @Override
+    protected int pickupArrow() {
+      return tunnel.pickupArrow();
+    }
+
+    /**
+     * Gets the dungeon the corridor belongs to, so views of different dungeons are never equal.
+     *
+     * @return dungeon of the corridor
+     */
+    private CompactDungeon owner() {
+      return CompactDungeon.this;
+    }
+
+    /**
+     * Gets the index of the packed arrows of the tunnel, which is the same for both directions.
+     *
+     * @return index of the tunnel
+     */
+    private int index() {
+      Move direction = tunnel.getDirection();
+      return 2 * tunnelCell(tunnel.cell, direction) + tunnelShift(direction) / 4;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CompactCorridor)) {
+        return false;
+      }
+      CompactCorridor other = (CompactCorridor) o;
+      return other.owner() == owner() && other.index() == index();
+    }
+
+    @Override
+    public int hashCode() {
+      return index();
+    }
+  }
+
+  /**
+   * This class is a view of the otyugh in a cell of the compact dungeon, backed by its health.
+   */
+  private class CompactOtyugh implements Otyugh {
+
+    private final int cell;
+
+    private CompactOtyugh(int cell) {
+      this.cell = cell;
+    }
+
+    @Override
+    public boolean isHit() {
+      return otyughHealth[cell] == HIT;
+    }
+
+    @Override
+    public void updateHit() {
+      if (otyughHealth[cell] > 0) {
+        setOtyughHealth(cell, (byte) (otyughHealth[cell] - 1));
+      }
+    }
+
+    @Override
+    public boolean isDead() {
+      return otyughHealth[cell] == 0;
+    }
+  }
+}
@@ -1,28 +1,34 @@
 package dungeon.dungeonmodel;
 
-import dungeon.kruskal.Kruskal;
+import dungeon.kruskal.DungeonGenerator;
 import dungeon.kruskal.KruskalImpl;
 import dungeon.location.Cave;
+import dungeon.location.Corridor;
 import dungeon.location.Location;
+import dungeon.location.LocationListener;
+import dungeon.location.SmellField;
 import dungeon.location.Tunnel;
-import dungeon.otyugh.Otyugh;
 import dungeon.otyugh.OtyughImpl;
+import dungeon.player.ArrowFlight;
+import dungeon.player.ArrowPath;
 import dungeon.player.Move;
 import dungeon.player.Player;
 import dungeon.player.PlayerImpl;
-import dungeon.position.Position;
 import dungeon.position.PositionImpl;
-import dungeon.treasure.Diamond;
-import dungeon.treasure.Ruby;
-import dungeon.treasure.Sapphire;
 import dungeon.treasure.Treasure;
+import dungeon.treasure.TreasureKind;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Queue;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * This class implements the functionalities of Dungeon model. This includes building a dungeon,
@@ -32,6 +38,8 @@ import java.util.Random;
  */
 public class Dungeon implements DungeonModel {
 
+  private static final boolean DEBUG = Boolean.getBoolean("dungeon.debug");
+
   private final Location[][] locationGrid;
   private final int rows;
   private final int cols;
@@ -39,12 +47,25 @@ public class Dungeon implements DungeonModel {
   private int percentageItems;
   private int otyughs;
   private final int interconnectivity;
+  private final long seed;
+  private final SplittableRandom random;
+  private final byte[] doors;
+  private final int[] treasureTotals;
+  private int caveArrowTotal;
+  private int tunnelArrowTotal;
+  private SmellField smellField;
+  private ArrowFlight arrowFlight;
+  private ArrowJumpTable arrowTable;
+  private final SnapshotTracker snapshots;
+  private final ChangeJournal changes;
+  private int playerCell;
+  private final BitSet visited;
   private Location start;
   private Location end;
   private Player player;
 
   /**
-   * Initializes the bare dungeon with certain characteristics.
+   * Initializes the bare dungeon with certain characteristics and a random seed.
    *
    * @param nonWrapping       whether the dungeon is a non-wrapping dungeon or not
    * @param rows              number of rows in the dungeon
@@ -53,6 +74,44 @@ public class Dungeon implements DungeonModel {
    *                          dungeons while > 0 for wrapping dungeons.
    */
   public Dungeon(boolean nonWrapping, int rows, int cols, int interconnectivity) {
+    this(nonWrapping, rows, cols, interconnectivity, new SplittableRandom().nextLong());
+  }
+
+  /**
+   * Initializes the bare dungeon with certain characteristics. All the randomness of the dungeon,
+   * i.e. its tunnels, start and end locations, treasure, arrows, otyughs and the player's fate, is
+   * drawn from a single random source created from the given seed. Two dungeons built with the same
+   * seed and characteristics, and driven through the same calls, are identical.
+   *
+   * @param nonWrapping       whether the dungeon is a non-wrapping dungeon or not
+   * @param rows              number of rows in the dungeon
+   * @param cols              number of columns in the dungeon
+   * @param interconnectivity the degree of interconnectivity of dungeon. It's 0 for non-wrapping
+   *                          dungeons while > 0 for wrapping dungeons.
+   * @param seed              seed of the random source of the dungeon
+   */
+  public Dungeon(boolean nonWrapping, int rows, int cols, int interconnectivity, long seed) {
+    this(nonWrapping, rows, cols, interconnectivity, seed, new KruskalImpl());
+  }
+
+  /**
+   * Initializes the bare dungeon with certain characteristics, laying out its tunnels with the
+   * given generator, e.g. a {@link dungeon.kruskal.TiledKruskal} for large dungeons.
+   *
+   * @param nonWrapping       whether the dungeon is a non-wrapping dungeon or not
+   * @param rows              number of rows in the dungeon
+   * @param cols              number of columns in the dungeon
+   * @param interconnectivity the degree of interconnectivity of dungeon. It's 0 for non-wrapping
+   *                          dungeons while > 0 for wrapping dungeons.
+   * @param seed              seed of the random source of the dungeon
+   * @param generator         generator of the tunnels of the dungeon
+   */
+  public Dungeon(boolean nonWrapping, int rows, int cols, int interconnectivity, long seed,
+      DungeonGenerator generator) {
+    if (generator == null) {
+      throw new IllegalArgumentException("Generator cannot be null");
+    }
+
     if (rows < 0) {
       throw new IllegalArgumentException("Rows cannot be negative");
     }
@@ -85,124 +144,115 @@ public class Dungeon implements DungeonModel {
     this.cols = cols;
     this.interconnectivity = interconnectivity;
     this.isNonWrapping = nonWrapping;
+    this.seed = seed;
+    this.random = new SplittableRandom(seed);
     locationGrid = new Location[rows][cols];
-    buildDungeon(nonWrapping, interconnectivity);
-    generateStartAndEnd(rows, cols);
+    this.doors = new byte[rows * cols];
+    this.treasureTotals = new int[TreasureKind.values().length];
+    this.snapshots = new SnapshotTracker(rows, cols);
+    this.changes = new ChangeJournal(rows, cols);
+    this.playerCell = -1;
+    this.visited = new BitSet(rows * cols);
+    buildDungeon(generator, nonWrapping, interconnectivity);
+    this.arrowFlight = ArrowFlight.STRAIGHT;
+    setScentRadius(2);
+    placeStartAndEnd(false);
   }
 
   /**
-   * Generate the start and end location of the dungeon.
-   *
-   * @param rows number of rows in the dungeon
-   * @param cols number of columns in the dungeon
-   */
-  private void generateStartAndEnd(int rows, int cols) {
-
-    Random random = new Random();
-
-    int x1 = random.nextInt(rows);
-    int y1 = random.nextInt(cols);
-    int x2 = random.nextInt(rows);
-    int y2 = random.nextInt(cols);
-
-    if ((Math.abs(x2 - x1) + Math.abs(y2 - y1)) >= 5) {
-      this.start = locationGrid[x1][y1];
-      this.end = locationGrid[x2][y2];
-    } else {
-      this.generateStartAndEnd(rows, cols);
-    }
-  }
-
-  /**
-   * Builds up the dungeon model with the given minimum spanning grid obtained from kruskal's
-   * algorithm.
+   * Builds up the dungeon model with the edges streamed from the given generator, such as kruskal's
+   * algorithm. Every accepted edge is wired straight into the location grid as a corridor shared by
+   * the caves at both of its ends.
    *
+   * @param generator         generator of the tunnels of the dungeon
    * @param nonWrapping       whether the given dungeon is non-wrapping or not.
    * @param interconnectivity the degree of interconnectivity for the dungeon
    */
-  private void buildDungeon(boolean nonWrapping, int interconnectivity) {
-
-    Kruskal kruskal = new KruskalImpl();
-
-    // generate list of vertices
-    List<Position> vertices = kruskal.generateVertices(rows, cols);
-
-    // map vertices to each cell in location grid, initializing the caves
-    for (Position p : vertices) {
-      locationGrid[p.getX()][p.getY()] = new Cave(new PositionImpl(p.getX(), p.getY()),
-          new ArrayList<>(),
-          new ArrayList<>());
+  private void buildDungeon(DungeonGenerator generator, boolean nonWrapping,
+      int interconnectivity) {
+
+    // every cave and tunnel reports its changes to the running totals
+    LocationListener totals = new Totals();
+
+    // initialize the caves of the location grid
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        Cave cave = new Cave(new PositionImpl(i, j), new ArrayList<>(), new ArrayList<>());
+        cave.setListener(totals);
+        locationGrid[i][j] = cave;
+      }
     }
 
-    // get the minimum span grid from kruskal algorithm.
-    Map<Position, List<Position>> minimumSpanGrid = kruskal.getMST(rows, cols, nonWrapping,
-        interconnectivity);
-
-    /* from the set of potential edges obtained from minimum span grid above, create a tunnel
-       between src to dest and dest to src
+    /* for every edge obtained from the generator, create a corridor between src and dest
     */
-    for (Map.Entry<Position, List<Position>> set : minimumSpanGrid.entrySet()) {
-      Position src = set.getKey();
-      int srcX = src.getX();
-      int srcY = src.getY();
-      Location srcCave = locationGrid[srcX][srcY];
-      for (Position dest : set.getValue()) {
-        Move move1 = null;
-        Move move2 = null;
-        int destX = dest.getX();
-        int destY = dest.getY();
-
-        if (srcY == destY) {
-          if (srcX - 1 == destX) {
-            move1 = Move.NORTH;
-            move2 = Move.SOUTH;
-          } else if (destX > srcX) {
-            if (srcX + 1 == destX) {
-              move1 = Move.SOUTH;
-              move2 = Move.NORTH;
-            } else {
-              move1 = Move.NORTH;
-              move2 = Move.SOUTH;
-            }
-          }
-        } else if (srcX == destX) {
-          if (srcY - 1 == destY) {
-            move1 = Move.WEST;
-            move2 = Move.EAST;
-          } else if (destY > srcY) {
-            if (srcY + 1 == destY) {
-              move1 = Move.EAST;
-              move2 = Move.WEST;
-            } else {
-              move1 = Move.WEST;
-              move2 = Move.EAST;
-            }
-          }
-        }
-        /* we maintain 2 moves because, if a tunnel from src to dest is directed south, then a
-           tunnel from dest to src directed north also exists!!
-         */
-        Location destCave = locationGrid[dest.getX()][dest.getY()];
-        Tunnel tunnel1 = new Tunnel(srcCave, destCave, move1);
-        Tunnel tunnel2 = new Tunnel(destCave, srcCave, move2);
-        srcCave.addTunnel(tunnel1);
-        destCave.addTunnel(tunnel2);
-      }
-    }
+    generator.generate(rows, cols, nonWrapping, interconnectivity, random, (cell, direction) -> {
+      int dest = direction.step(cell, rows, cols);
+      Cave srcCave = (Cave) locationGrid[cell / cols][cell % cols];
+      Cave destCave = (Cave) locationGrid[dest / cols][dest % cols];
+
+      /* both caves share a single corridor, because if a tunnel from src to dest is directed
+         south, then a tunnel from dest to src directed north also exists!!
+       */
+      Corridor corridor = new Corridor(srcCave, destCave, direction);
+      corridor.setListener(totals);
+      srcCave.addCorridor(corridor, direction);
+      destCave.addCorridor(corridor, direction.getOpposite());
+      doors[cell] |= direction.getMask();
+      doors[dest] |= direction.getOpposite().getMask();
+    });
   }
 
   @Override
   public String getState() {
     StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < this.rows; i++) {
+    try {
+      writeState(sb);
+    } catch (IOException ioException) {
+      // appending to a string builder never fails
+      throw new IllegalStateException(ioException);
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public void writeState(Appendable out) throws IOException {
+    writeState(out, 0, this.rows);
+  }
+
+  @Override
+  public void writeState(Appendable out, int fromRow, int toRow) throws IOException {
+    checkRows(fromRow, toRow);
+    for (int i = fromRow; i < toRow; i++) {
       for (int j = 0; j < this.cols; j++) {
-        sb.append(locationGrid[i][j].toString());
-        sb.append("\n");
+        out.append(locationGrid[i][j].toString());
+        out.append("\n");
       }
     }
-    return sb.toString();
   }
 
+  @Override
+  public void writeCompressedState(OutputStream out, int fromRow, int toRow)
+      throws IOException {
+    checkRows(fromRow, toRow);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+    writeState(writer, fromRow, toRow);
+    writer.flush();
+    gzip.finish();
+  }
+
+  /**
+   * Checks if the given range of rows is within the dungeon.
+   *
+   * @param fromRow first row of the range
+   * @param toRow   row after the last row of the range
+   * @throws IllegalArgumentException if the range is not within the dungeon
+   */
+  private void checkRows(int fromRow, int toRow) {
+    if (fromRow < 0 || toRow > this.rows || fromRow > toRow) {
+      throw new IllegalArgumentException("Rows must be within 0 and " + this.rows);
+    }
+  }
 
   @Override
   public void addTreasure(int percentage) {
@@ -211,26 +261,14 @@ public class Dungeon implements DungeonModel {
     }
     this.percentageItems = percentage;
 
-    Random random = new Random();
-    List<String> randomTreasure = new ArrayList<>();
-    randomTreasure.add("Ruby");
-    randomTreasure.add("Sapphire");
-    randomTreasure.add("Diamond");
-
     int actualNumber = (percentage * this.rows * this.cols) / 100;
 
     for (int i = 0; i < actualNumber; i++) {
 
       int x = random.nextInt(rows);
       int y = random.nextInt(cols);
-      int treasureIndex = random.nextInt(randomTreasure.size());
-      if (randomTreasure.get(treasureIndex).equals("Ruby")) {
-        locationGrid[x][y].addTreasure(new Ruby());
-      } else if (randomTreasure.get(treasureIndex).equals("Sapphire")) {
-        locationGrid[x][y].addTreasure(new Sapphire());
-      } else {
-        locationGrid[x][y].addTreasure(new Diamond());
-      }
+      TreasureKind kind = TreasureKind.values()[random.nextInt(TreasureKind.values().length)];
+      locationGrid[x][y].addTreasure(kind);
 
       // deciding between adding to a cave or one of its tunnels
       String[] locationChoice = {"Cave", "Tunnel"};
@@ -252,35 +290,32 @@ public class Dungeon implements DungeonModel {
 
   @Override
   public void addOtyughs(int number) {
-    if (number <= 0 || number > this.rows * this.cols) {
+    if (number <= 0 || number > this.rows * this.cols - 1) {
       throw new IllegalArgumentException("Number of Otyughs must be > 0 and <= " +
-          this.rows * this.cols);
+          (this.rows * this.cols - 1));
+    }
+
+    // the remaining otyughs go to distinct free caves other than the start and end location
+    CellSampler freeCaves = new CellSampler(rows * cols);
+    for (int cell = 0; cell < rows * cols; cell++) {
+      Location location = locationOf(cell);
+      if (location != this.start && location != this.end && location.getOtyugh() == null) {
+        freeCaves.add(cell);
+      }
+    }
+
+    if (freeCaves.remaining() < number - 1) {
+      throw new IllegalArgumentException("Only " + freeCaves.remaining()
+          + " caves are free for the Otyughs");
     }
 
     this.otyughs = number;
     // add an otyugh at the end location
     this.end.addOtyugh(new OtyughImpl());
 
-    Random random = new Random();
-
-    // add to the remaining random locations
-    int i = 0;
-
-    while (i < number - 1) {
-      int x = random.nextInt(this.rows);
-      int y = random.nextInt(this.cols);
-      // if not the start location then add
-      if (!(x == this.start.getPosition().getX() && y == this.start.getPosition().getY())) {
-        Otyugh otyugh = new OtyughImpl();
-        try {
-          locationGrid[x][y].addOtyugh(otyugh);
-        } catch (IllegalStateException ise) {
-          continue;
-        }
-        i += 1;
-      }
+    for (int i = 0; i < number - 1; i++) {
+      locationOf(freeCaves.draw(random)).addOtyugh(new OtyughImpl());
     }
-
   }
 
   @Override
@@ -338,7 +373,97 @@ public class Dungeon implements DungeonModel {
 
   @Override
   public void enterPlayer() {
-    this.player = new PlayerImpl("Zeus", this.start);
+    this.player = new PlayerImpl("Zeus", this.start, this.random.split());
+    this.player.setArrowPath(arrowPath());
+    this.visited.clear();
+    playerMoved(cellOf(this.start));
+    this.player.setMoveListener(location -> playerMoved(cellOf(location)));
+  }
+
+  @Override
+  public void placeStartAndEnd(boolean maximallyDistant) {
+    if (this.player != null || this.otyughs > 0) {
+      throw new IllegalStateException(
+          "Start and end can only be placed before the player enters and otyughs are added");
+    }
+
+    // the search is only kept for as long as a query runs, so it holds no memory in between
+    GridSearch search = new GridSearch(rows, cols, doors);
+    int[] startAndEnd = new StartEndPlacer(search, rows * cols, random).place(maximallyDistant);
+    this.start = locationOf(startAndEnd[0]);
+    this.end = locationOf(startAndEnd[1]);
+  }
+
+  @Override
+  public void setScentRadius(int radius) {
+    this.smellField = new SmellField(rows, cols, doors, radius);
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        ((Cave) locationGrid[i][j]).setSmellField(this.smellField, i * cols + j);
+      }
+    }
+    allChanged();
+  }
+
+  @Override
+  public void setArrowFlight(ArrowFlight arrowFlight) {
+    if (arrowFlight == null) {
+      throw new IllegalArgumentException("Arrow flight cannot be null");
+    }
+    this.arrowFlight = arrowFlight;
+    if (this.player != null) {
+      this.player.setArrowPath(arrowPath());
+    }
+  }
+
+  @Override
+  public ArrowFlight getArrowFlight() {
+    return this.arrowFlight;
+  }
+
+  /**
+   * Gets the path the arrows of the player follow for the current arrow flight.
+   *
+   * @return path of the arrows, null for arrows flying straight
+   */
+  private ArrowPath arrowPath() {
+    if (this.arrowFlight == ArrowFlight.CURVED) {
+      return this::landArrow;
+    }
+    return null;
+  }
+
+  /**
+   * Finds the location an arrow following the bends of tunnels lands in, building the jump table
+   * of the dungeon on the first shot.
+   *
+   * @param from      location the arrow is shot from
+   * @param direction direction the arrow is shot in
+   * @param distance  the given distance i.e. the number of caves
+   * @return location the arrow lands in, or null if the arrow is lost in the darkness
+   */
+  private Location landArrow(Location from, Move direction, int distance) {
+    if (this.arrowTable == null) {
+      this.arrowTable = new ArrowJumpTable(rows, cols, doors);
+    }
+    int cell = this.arrowTable.land(cellOf(from), direction, distance);
+    if (cell < 0) {
+      return null;
+    }
+    return locationOf(cell);
+  }
+
+  @Override
+  public int getScentRadius() {
+    return this.smellField.getRadius();
+  }
+
+  @Override
+  public int getSmellIntensity(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return this.smellField.getIntensity(row * cols + col);
   }
 
   @Override
@@ -377,34 +502,52 @@ public class Dungeon implements DungeonModel {
 
   @Override
   public List<Location> getBFSTraversal() {
+    GridSearch search = new GridSearch(rows, cols, doors);
+    int visitedCount = search.search(cellOf(this.start), cellOf(this.end));
+    List<Location> visited = new ArrayList<>(visitedCount);
+    for (int i = 0; i < visitedCount; i++) {
+      visited.add(locationOf(search.getVisited(i)));
+    }
+    return visited;
+  }
 
-    Queue<Location> queue = new LinkedList<>();
-    queue.add(this.start);
-    List<Location> visited = new ArrayList<>();
-
-    while (!(queue.isEmpty())) {
-      // dequeue parent
-      Location parent = queue.remove();
-      if (visited.contains(parent)) {
-        continue;
-      }
-
-      visited.add(parent);
+  @Override
+  public List<Location> getShortestPath() {
+    GridSearch search = new GridSearch(rows, cols, doors);
+    search.search(cellOf(this.start), cellOf(this.end));
+    int[] path = search.getPath(cellOf(this.end));
+    List<Location> locations = new ArrayList<>(path.length);
+    for (int cell : path) {
+      locations.add(locationOf(cell));
+    }
+    return locations;
+  }
 
-      // check if goal state
-      if (parent.equals(this.end)) {
-        break;
-      }
+  @Override
+  public int getShortestPathDistance() {
+    GridSearch search = new GridSearch(rows, cols, doors);
+    search.search(cellOf(this.start), cellOf(this.end));
+    return search.getPath(cellOf(this.end)).length - 1;
+  }
 
-      // add its children
-      List<Tunnel> parentTunnels = parent.getTunnel();
-      for (Tunnel parentTunnel : parentTunnels) {
-        Location child = parentTunnel.getDestination();
-        queue.add(child);
-      }
-    }
+  /**
+   * Gets the index of the cell of the given location, {@code row * cols + col}.
+   *
+   * @param location location of the dungeon
+   * @return index of the cell
+   */
+  private int cellOf(Location location) {
+    return location.getPosition().getX() * cols + location.getPosition().getY();
+  }
 
-    return visited;
+  /**
+   * Gets the location of the given cell.
+   *
+   * @param cell index of the cell
+   * @return location of the cell
+   */
+  private Location locationOf(int cell) {
+    return locationGrid[cell / cols][cell % cols];
   }
 
   @Override
@@ -425,6 +568,103 @@ public class Dungeon implements DungeonModel {
     return grid;
   }
 
+  /**
+   * Records a change to the cave of the given cell, for the next snapshot and the change journal.
+   *
+   * @param cell index of the cell
+   */
+  private void cellChanged(int cell) {
+    snapshots.markCell(cell);
+    changes.touch(cell);
+  }
+
+  /**
+   * Records an otyugh appearing or dying in the given cell, which changes the smell of every cave
+   * within the scent radius.
+   *
+   * @param cell index of the cell
+   */
+  private void otyughChanged(int cell) {
+    snapshots.markAround(cell, smellField.getRadius());
+    changes.touchAround(cell, smellField.getRadius());
+  }
+
+  /**
+   * Records a change to every cave of the dungeon.
+   */
+  private void allChanged() {
+    snapshots.markAll();
+    changes.touchAll();
+  }
+
+  /**
+   * Records the player moving to the given cell, which changes the cells it left and entered and
+   * marks the cell it entered as visited.
+   *
+   * @param cell index of the cell the player moved to
+   */
+  private void playerMoved(int cell) {
+    if (this.playerCell >= 0) {
+      changes.touch(this.playerCell);
+    }
+    changes.touch(cell);
+    this.playerCell = cell;
+    this.visited.set(cell);
+  }
+
+  @Override
+  public long getVersion() {
+    return changes.getVersion();
+  }
+
+  @Override
+  public long getCellVersion(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return changes.getCellVersion(row * cols + col);
+  }
+
+  @Override
+  public int[] getChangedCells(long since) {
+    return changes.getChangedCells(since);
+  }
+
+  @Override
+  public boolean isVisited(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return this.visited.get(row * cols + col);
+  }
+
+  @Override
+  public BitSet getVisitedCells() {
+    return (BitSet) this.visited.clone();
+  }
+
+  @Override
+  public DungeonSnapshot snapshot() {
+    return snapshots.snapshot(this::packCell, this.playerCell);
+  }
+
+  /**
+   * Packs the state of the cave of the given cell for a snapshot.
+   *
+   * @param cell index of the cell
+   * @return packed cave
+   */
+  private int packCell(int cell) {
+    Location cave = locationOf(cell);
+    int packed = DungeonSnapshot.pack(doors[cell], cave.getOtyugh() != null,
+        cave.getArrowCount(), SmellField.level(smellField.getIntensity(cell),
+            smellField.getRadius()));
+    for (TreasureKind kind : TreasureKind.values()) {
+      packed = DungeonSnapshot.withTreasure(packed, kind, cave.getTreasureCount(kind));
+    }
+    return packed;
+  }
+
   @Override
   public int getRows() {
     return this.rows;
@@ -455,36 +695,100 @@ public class Dungeon implements DungeonModel {
 
   @Override
   public int getTreasureCount() {
+    checkTotals();
     int treasureCount = 0;
-    for (int i = 0; i < this.rows; i++) {
-      for (int j = 0; j < this.cols; j++) {
-        treasureCount += locationGrid[i][j].getTreasure().size();
-      }
+    for (int count : this.treasureTotals) {
+      treasureCount += count;
     }
-
     return treasureCount;
   }
 
+  @Override
+  public int getTreasureCount(TreasureKind kind) {
+    checkTotals();
+    return this.treasureTotals[kind.ordinal()];
+  }
+
   @Override
   public int getArrowCount() {
-    int arrowCount = 0;
+    checkTotals();
+    return this.caveArrowTotal + this.tunnelArrowTotal;
+  }
+
+  @Override
+  public int getCaveArrowCount() {
+    checkTotals();
+    return this.caveArrowTotal;
+  }
+
+  @Override
+  public int getTunnelArrowCount() {
+    checkTotals();
+    return this.tunnelArrowTotal;
+  }
+
+  @Override
+  public int getPlayerArrowCount() {
+    if (this.player == null) {
+      return 0;
+    }
+    return this.player.getArrows();
+  }
+
+  /**
+   * Compares the running totals of treasure and arrows against a full scan of the dungeon when the
+   * {@code dungeon.debug} system property is true.
+   *
+   * @throws IllegalStateException if a running total doesn't match the scan
+   */
+  private void checkTotals() {
+    if (!(DEBUG)) {
+      return;
+    }
+
+    int[] treasureCounts = new int[TreasureKind.values().length];
+    int caveArrows = 0;
+    int tunnelArrows = 0;
     for (int i = 0; i < this.rows; i++) {
       for (int j = 0; j < this.cols; j++) {
-        arrowCount += locationGrid[i][j].getArrowCount();
+        for (TreasureKind kind : TreasureKind.values()) {
+          treasureCounts[kind.ordinal()] += locationGrid[i][j].getTreasureCount(kind);
+        }
+        caveArrows += locationGrid[i][j].getArrowCount();
+        // every corridor is seen from both its caves, so only count it from its west or north end
         for (Tunnel tunnel : locationGrid[i][j].getTunnel()) {
-          arrowCount += tunnel.getArrowCount();
+          if (tunnel.getDirection() == Move.EAST || tunnel.getDirection() == Move.SOUTH) {
+            tunnelArrows += tunnel.getArrowCount();
+          }
         }
       }
     }
-    return arrowCount;
-  }
 
+    for (TreasureKind kind : TreasureKind.values()) {
+      if (treasureCounts[kind.ordinal()] != this.treasureTotals[kind.ordinal()]) {
+        throw new IllegalStateException("Total of " + kind + " is "
+            + this.treasureTotals[kind.ordinal()] + " but " + treasureCounts[kind.ordinal()]
+            + " were found");
+      }
+    }
+
+    if (caveArrows != this.caveArrowTotal || tunnelArrows != this.tunnelArrowTotal) {
+      throw new IllegalStateException("Total of arrows is " + this.caveArrowTotal + " in caves and "
+          + this.tunnelArrowTotal + " in tunnels but " + caveArrows + " and " + tunnelArrows
+          + " were found");
+    }
+  }
 
   @Override
   public void addArrow(Location location) {
     location.addArrow();
   }
 
+  @Override
+  public long getSeed() {
+    return this.seed;
+  }
+
   @Override
   public boolean isNonWrapping() {
     return this.isNonWrapping;
@@ -500,4 +804,32 @@ public class Dungeon implements DungeonModel {
     return this.otyughs;
   }
 
+  /**
+   * This class keeps the running totals of treasure and arrows of the dungeon up to date with the
+   * changes reported by its caves and tunnels, and records the changed caves.
+   */
+  private class Totals implements LocationListener {
+
+    @Override
+    public void treasureChanged(Location cave, TreasureKind kind, int delta) {
+      treasureTotals[kind.ordinal()] += delta;
+      cellChanged(cellOf(cave));
+    }
+
+    @Override
+    public void caveArrowsChanged(Location cave, int delta) {
+      caveArrowTotal += delta;
+      cellChanged(cellOf(cave));
+    }
+
+    @Override
+    public void tunnelArrowsChanged(int delta) {
+      tunnelArrowTotal += delta;
+    }
+
+    @Override
+    public void otyughChanged(Location cave) {
+      Dungeon.this.otyughChanged(cellOf(cave));
+    }
+  }
 }
@@ -2,6 +2,7 @@ package dungeon.dungeonmodel;
 
 import dungeon.dungeonview.ReadonlyDungeonModel;
 import dungeon.location.Location;
+import dungeon.player.ArrowFlight;
 import dungeon.treasure.Treasure;
 
 /**
@@ -28,6 +29,35 @@ public interface DungeonModel extends ReadonlyDungeonModel {
    */
   void enterPlayer();
 
+  /**
+   * Places the start and end location of the dungeon again. The end location is at least 5 moves
+   * away from the start location if the dungeon allows it, or as far away as possible if asked for.
+   *
+   * @param maximallyDistant whether the start and end should be as far apart as possible
+   * @throws IllegalStateException if the player has entered or the otyughs have been added
+   */
+  void placeStartAndEnd(boolean maximallyDistant);
+
+  /**
+   * Sets the largest path distance an otyugh can be smelled from. An otyugh at distance d adds
+   * 2^(radius - d) to the smell of a cave for every shortest path to it, and the smell is terrible
+   * from 2^(radius - 1) onwards. The default radius is 2.
+   *
+   * @param radius largest path distance an otyugh can be smelled from
+   * @throws IllegalArgumentException if the radius is not between 1 and 8
+   */
+  void setScentRadius(int radius);
+
+  /**
+   * Sets the way the arrows shot by the player fly. Straight arrows count every location towards
+   * the distance of a shot, while curved arrows follow tunnels through their bends and only count
+   * caves. The default is straight.
+   *
+   * @param arrowFlight way the arrows fly
+   * @throws IllegalArgumentException if the arrow flight is null
+   */
+  void setArrowFlight(ArrowFlight arrowFlight);
+
   /**
    * Moves the player from the current location to a new location.
    *
@@ -0,0 +1,218 @@
+package dungeon.dungeonmodel;
+
+import dungeon.treasure.TreasureKind;
+
+/**
+ * This class represents an immutable snapshot of the state of the caves of a dungeon, which can be
+ * read from any thread without locks while the dungeon keeps changing. Every cave is packed into a
+ * single int, and the rows of caves are shared with the previous snapshot wherever no cave of the
+ * row has changed since. The smell of a cave is kept as its level, see {@link
+ * dungeon.location.SmellField#level(int, int)}, which is all a reader draws or describes.
+ *
+ * <p>Counts larger than a field can hold are kept at the largest value of the field: 127 arrows and
+ * 63 treasures of each kind.
+ */
+public final class DungeonSnapshot {
+
+  private static final int DOOR_BITS = 4;
+  private static final int OTYUGH_SHIFT = DOOR_BITS;
+  private static final int SMELL_SHIFT = OTYUGH_SHIFT + 1;
+  private static final int SMELL_BITS = 2;
+  private static final int ARROW_SHIFT = SMELL_SHIFT + SMELL_BITS;
+  private static final int ARROW_BITS = 7;
+  private static final int TREASURE_SHIFT = ARROW_SHIFT + ARROW_BITS;
+  private static final int TREASURE_BITS = (Integer.SIZE - TREASURE_SHIFT) / 3;
+
+  private final int rows;
+  private final int cols;
+  private final int[][] cells;
+  private final int playerCell;
+
+  /**
+   * Initializes a snapshot over the given rows of packed caves, which are never changed afterwards.
+   *
+   * @param rows       number of rows in dungeon
+   * @param cols       number of columns in dungeon
+   * @param cells      packed caves of every row, see {@link #pack(int, boolean, int, int)}
+   * @param playerCell index of the cell of the player, -1 if the player hasn't entered
+   */
+  DungeonSnapshot(int rows, int cols, int[][] cells, int playerCell) {
+    this.rows = rows;
+    this.cols = cols;
+    this.cells = cells;
+    this.playerCell = playerCell;
+  }
+
+  /**
+   * Packs the state of a cave without treasure into an int.
+   *
+   * @param doors      bitmask of open doors of the cave
+   * @param otyugh     whether there's an otyugh in the cave
+   * @param arrows     number of arrows in the cave
+   * @param smellLevel level of the smell in the cave, see {@link
+   *                   dungeon.location.SmellField#level(int, int)}
+   * @return packed cave
+   */
+  static int pack(int doors, boolean otyugh, int arrows, int smellLevel) {
+    int cell = doors & ((1 << DOOR_BITS) - 1);
+    if (otyugh) {
+      cell |= 1 << OTYUGH_SHIFT;
+    }
+    cell |= saturate(smellLevel, SMELL_BITS) << SMELL_SHIFT;
+    cell |= saturate(arrows, ARROW_BITS) << ARROW_SHIFT;
+    return cell;
+  }
+
+  /**
+   * Adds the treasure of the given kind to a packed cave.
+   *
+   * @param cell  packed cave without treasure of the kind
+   * @param kind  kind of treasure
+   * @param count number of treasures of the kind in the cave
+   * @return packed cave with the treasure
+   */
+  static int withTreasure(int cell, TreasureKind kind, int count) {
+    int shift = TREASURE_SHIFT + kind.ordinal() * TREASURE_BITS;
+    return cell | saturate(count, TREASURE_BITS) << shift;
+  }
+
+  /**
+   * Limits a count to the largest value a field of the given width can hold.
+   *
+   * @param count given count
+   * @param bits  width of the field
+   * @return count limited to the field
+   */
+  private static int saturate(int count, int bits) {
+    return Math.min(Math.max(count, 0), (1 << bits) - 1);
+  }
+
+  /**
+   * Gets the number of rows in the dungeon.
+   *
+   * @return number of rows
+   */
+  public int getRows() {
+    return this.rows;
+  }
+
+  /**
+   * Gets the number of columns in the dungeon.
+   *
+   * @return number of columns
+   */
+  public int getColumns() {
+    return this.cols;
+  }
+
+  /**
+   * Gets the bitmask of open doors of the cave at the given position.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return bitmask of open doors, see {@link dungeon.player.Move#getMask()}
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  public int getDoorMask(int row, int col) {
+    return cell(row, col) & ((1 << DOOR_BITS) - 1);
+  }
+
+  /**
+   * Checks whether there's an otyugh in the cave at the given position.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return true if there's an otyugh in the cave
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  public boolean hasOtyugh(int row, int col) {
+    return ((cell(row, col) >>> OTYUGH_SHIFT) & 1) != 0;
+  }
+
+  /**
+   * Gets the number of arrows in the cave at the given position.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return number of arrows in the cave
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  public int getArrowCount(int row, int col) {
+    return (cell(row, col) >>> ARROW_SHIFT) & ((1 << ARROW_BITS) - 1);
+  }
+
+  /**
+   * Gets the number of treasures of the given kind in the cave at the given position.
+   *
+   * @param row  row of the cave
+   * @param col  column of the cave
+   * @param kind kind of treasure
+   * @return number of treasures of the kind in the cave
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  public int getTreasureCount(int row, int col, TreasureKind kind) {
+    int shift = TREASURE_SHIFT + kind.ordinal() * TREASURE_BITS;
+    return (cell(row, col) >>> shift) & ((1 << TREASURE_BITS) - 1);
+  }
+
+  /**
+   * Gets the level of the smell of otyughs in the cave at the given position.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return 0 if no otyugh can be smelled, 1 for a less pungent smell and 2 for a terrible smell
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  public int getSmellLevel(int row, int col) {
+    return (cell(row, col) >>> SMELL_SHIFT) & ((1 << SMELL_BITS) - 1);
+  }
+
+  /**
+   * Gets the row of the player.
+   *
+   * @return row of the player, -1 if the player hasn't entered
+   */
+  public int getPlayerRow() {
+    return this.playerCell < 0 ? -1 : this.playerCell / this.cols;
+  }
+
+  /**
+   * Gets the column of the player.
+   *
+   * @return column of the player, -1 if the player hasn't entered
+   */
+  public int getPlayerColumn() {
+    return this.playerCell < 0 ? -1 : this.playerCell % this.cols;
+  }
+
+  /**
+   * Checks whether the given row is shared with another snapshot, in which case none of its caves
+   * changed between the two snapshots and it doesn't need to be read again.
+   *
+   * @param other other snapshot of the same dungeon
+   * @param row   row of the dungeon
+   * @return true if the row is shared by both snapshots
+   * @throws IllegalArgumentException if the row is not within the dungeon
+   */
+  public boolean sharesRow(DungeonSnapshot other, int row) {
+    if (row < 0 || row >= rows) {
+      throw new IllegalArgumentException("Row must be within the dungeon");
+    }
+    return other != null && other.rows == this.rows && other.cells[row] == this.cells[row];
+  }
+
+  /**
+   * Gets the packed cave at the given position.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return packed cave
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  private int cell(int row, int col) {
+    if (row < 0 || row >= rows || col < 0 || col >= cols) {
+      throw new IllegalArgumentException("Position must be within the dungeon");
+    }
+    return this.cells[row][col];
+  }
+}
@@ -0,0 +1,133 @@
+package dungeon.dungeonmodel;
+
+import dungeon.player.Move;
+import java.util.BitSet;
+
+/**
+ * This class runs Breadth-First Search (BFS) over the caves of a dungeon given as a bitmask of open
+ * doors per cell. Every cell is visited at most once, so a search takes time linear in the number
+ * of cells. The queue doubles as the order in which the cells were visited, so their distances
+ * from the source never decrease along it. The parent and distance of every visited cell are kept
+ * to reconstruct shortest paths.
+ */
+class GridSearch {
+
+  private final int rows;
+  private final int cols;
+  private final byte[] doors;
+  private final int[] queue;
+  private final int[] parent;
+  private final int[] distance;
+  private final BitSet visited;
+  private int visitedCount;
+
+  /**
+   * Initializes the search over the given doors.
+   *
+   * @param rows  number of rows in dungeon
+   * @param cols  number of columns in dungeon
+   * @param doors bitmask of open doors of every cell, see {@link Move#getMask()}
+   */
+  GridSearch(int rows, int cols, byte[] doors) {
+    this.rows = rows;
+    this.cols = cols;
+    this.doors = doors;
+    this.queue = new int[rows * cols];
+    this.parent = new int[rows * cols];
+    this.distance = new int[rows * cols];
+    this.visited = new BitSet(rows * cols);
+  }
+
+  /**
+   * Searches the dungeon from the given source until the goal is visited, or every reachable cell
+   * if the goal is -1.
+   *
+   * @param source index of the cell the search starts from
+   * @param goal   index of the cell the search stops at, -1 to visit every reachable cell
+   * @return number of visited cells
+   */
+  int search(int source, int goal) {
+    visited.clear();
+    int head = 0;
+    int tail = 0;
+
+    queue[tail++] = source;
+    parent[source] = -1;
+    distance[source] = 0;
+    visited.set(source);
+    while (head < tail) {
+      int cell = queue[head++];
+
+      // check if goal state
+      if (cell == goal) {
+        break;
+      }
+
+      for (Move move : Move.values()) {
+        if ((doors[cell] & move.getMask()) != 0) {
+          int child = move.step(cell, rows, cols);
+          if (!(visited.get(child))) {
+            visited.set(child);
+            parent[child] = cell;
+            distance[child] = distance[cell] + 1;
+            queue[tail++] = child;
+          }
+        }
+      }
+    }
+
+    this.visitedCount = head;
+    return head;
+  }
+
+  /**
+   * Gets the cell visited at the given step of the last search.
+   *
+   * @param index step of the search, less than the number of visited cells
+   * @return index of the visited cell
+   */
+  int getVisited(int index) {
+    if (index < 0 || index >= visitedCount) {
+      throw new IndexOutOfBoundsException("Only " + visitedCount + " cells were visited");
+    }
+    return queue[index];
+  }
+
+  /**
+   * Gets the number of moves from the source of the last search to the given cell.
+   *
+   * @param cell index of a cell reached by the last search
+   * @return distance from the source
+   * @throws IllegalArgumentException if the cell wasn't reached by the last search
+   */
+  int getDistance(int cell) {
+    if (!(visited.get(cell))) {
+      throw new IllegalArgumentException("Cell " + cell + " was not reached");
+    }
+    return distance[cell];
+  }
+
+  /**
+   * Gets the shortest path from the source of the last search to the given cell.
+   *
+   * @param goal index of a cell reached by the last search
+   * @return indices of the cells on the path, from the source to the goal
+   * @throws IllegalArgumentException if the cell wasn't reached by the last search
+   */
+  int[] getPath(int goal) {
+    if (!(visited.get(goal))) {
+      throw new IllegalArgumentException("Cell " + goal + " was not reached");
+    }
+
+    int length = 0;
+    for (int cell = goal; cell != -1; cell = parent[cell]) {
+      length += 1;
+    }
+
+    int[] path = new int[length];
+    for (int cell = goal; cell != -1; cell = parent[cell]) {
+      path[--length] = cell;
+    }
+    return path;
+  }
+}
@@ -0,0 +1,478 @@
+package dungeon.dungeonmodel;
+
+import dungeon.dungeonview.ReadonlyDungeonModel;
+import dungeon.location.Location;
+import dungeon.location.Tunnel;
+import dungeon.player.Move;
+import dungeon.treasure.TreasureKind;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class implements a dungeon shared by many players moving through it at the same time from
+ * different threads. It takes over the layout, items and otyughs of a dungeon when it's created.
+ *
+ * <p>The items of every cave and tunnel and the health of every otyugh live in atomic arrays, and
+ * are only ever taken by a compare-and-set, so two players can never collect the same item or land
+ * the same blow. The players themselves are kept in a table split into stripes, each behind its own
+ * lock, so players in different stripes never wait for each other.
+ */
+public class SharedDungeon {
+
+  private static final int STRIPES = 64;
+  private static final int HEALTHY = 2;
+  private static final int HIT = 1;
+  private static final TreasureKind[] TREASURE_VALUES = TreasureKind.values();
+  private static final int TREASURE_KINDS = TREASURE_VALUES.length;
+
+  private final int rows;
+  private final int cols;
+  private final byte[] doors;
+  private final int start;
+  private final AtomicIntegerArray caveArrows;
+  // arrows of the tunnel leading east or south of every cell, at 2 * cell and 2 * cell + 1
+  private final AtomicIntegerArray tunnelArrows;
+  private final AtomicIntegerArray treasure;
+  private final AtomicIntegerArray otyughHealth;
+  private final SplittableRandom random;
+  private final AtomicInteger nextId;
+  private final Object[] locks;
+  private final List<Map<Integer, SharedPlayer>> players;
+
+  /**
+   * Initializes a shared dungeon with the layout, items and otyughs the given dungeon has now. The
+   * given dungeon isn't changed by the players of the shared dungeon.
+   *
+   * @param dungeon dungeon to take over
+   * @param seed    seed of the random source deciding whether a wounded otyugh eats a player
+   * @throws IllegalArgumentException if the dungeon is null
+   */
+  public SharedDungeon(ReadonlyDungeonModel dungeon, long seed) {
+    if (dungeon == null) {
+      throw new IllegalArgumentException("Dungeon cannot be null");
+    }
+
+    this.rows = dungeon.getRows();
+    this.cols = dungeon.getColumns();
+    this.doors = new byte[rows * cols];
+    this.caveArrows = new AtomicIntegerArray(rows * cols);
+    this.tunnelArrows = new AtomicIntegerArray(2 * rows * cols);
+    this.treasure = new AtomicIntegerArray(TREASURE_KINDS * rows * cols);
+    this.otyughHealth = new AtomicIntegerArray(rows * cols);
+
+    Location[][] grid = dungeon.getLocationGrid();
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        int cell = i * cols + j;
+        Location cave = grid[i][j];
+        doors[cell] = (byte) cave.getDoorMask();
+        caveArrows.set(cell, cave.getArrowCount());
+        for (TreasureKind kind : TREASURE_VALUES) {
+          treasure.set(treasureIndex(cell, kind), cave.getTreasureCount(kind));
+        }
+        for (Move move : new Move[] {Move.EAST, Move.SOUTH}) {
+          Tunnel tunnel = cave.getTunnel(move);
+          if (tunnel != null) {
+            tunnelArrows.set(tunnelIndex(cell, move), tunnel.getArrowCount());
+          }
+        }
+        if (cave.getOtyugh() != null && !(cave.getOtyugh().isDead())) {
+          otyughHealth.set(cell, cave.getOtyugh().isHit() ? HIT : HEALTHY);
+        }
+      }
+    }
+
+    Location startState = dungeon.getStartState();
+    this.start = startState.getPosition().getX() * cols + startState.getPosition().getY();
+    this.random = new SplittableRandom(seed);
+    this.nextId = new AtomicInteger();
+    this.locks = new Object[STRIPES];
+    this.players = new ArrayList<>(STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      this.locks[i] = new Object();
+      this.players.add(new HashMap<>());
+    }
+  }
+
+  /**
+   * Adds a new player at the start location of the dungeon, with 3 arrows and no treasure.
+   *
+   * @param name name of the player
+   * @return id of the player
+   */
+  public int addPlayer(String name) {
+    SplittableRandom playerRandom;
+    synchronized (random) {
+      playerRandom = random.split();
+    }
+
+    int id = nextId.getAndIncrement();
+    synchronized (locks[stripe(id)]) {
+      players.get(stripe(id)).put(id, new SharedPlayer(name, start, playerRandom));
+    }
+    return id;
+  }
+
+  /**
+   * Moves the player in the given direction, picking up the arrows lying in the tunnel on the way.
+   *
+   * @param id   id of the player
+   * @param move direction of the move
+   * @return an empty string or You are in a tunnel, you picked up Arrow
+   * @throws NoSuchElementException   if there's no player with the id
+   * @throws IllegalArgumentException if there's no door in the direction
+   * @throws IllegalStateException    if the player is dead, before or after the move
+   */
+  public String move(int id, Move move) {
+    synchronized (locks[stripe(id)]) {
+      SharedPlayer player = alivePlayer(id);
+      if ((doors[player.cell] & move.getMask()) == 0) {
+        throw new IllegalArgumentException("Move: " + move + " not possible");
+      }
+
+      String sb = "";
+      int picked = tunnelArrows.getAndSet(tunnelIndex(player.cell, move), 0);
+      if (picked > 0) {
+        player.arrows += picked;
+        sb = "\nYou are in a tunnel\nYou picked up " + picked + " Arrow\n";
+      }
+
+      player.cell = move.step(player.cell, rows, cols);
+      int health = otyughHealth.get(player.cell);
+      if (health == HEALTHY || health == HIT && player.random.nextDouble() < 0.5) {
+        player.alive = false;
+        throw new IllegalStateException("Player is dead");
+      }
+      return sb;
+    }
+  }
+
+  /**
+   * Picks up all the arrows in the cave of the player.
+   *
+   * @param id id of the player
+   * @return number of arrows picked up
+   * @throws NoSuchElementException if there's no player with the id or no arrows in the cave
+   * @throws IllegalStateException  if the player is dead
+   */
+  public int pickupArrows(int id) {
+    synchronized (locks[stripe(id)]) {
+      SharedPlayer player = alivePlayer(id);
+      int picked = caveArrows.getAndSet(player.cell, 0);
+      if (picked == 0) {
+        throw new NoSuchElementException("No arrows available");
+      }
+      player.arrows += picked;
+      return picked;
+    }
+  }
+
+  /**
+   * Picks up one treasure of the given kind from the cave of the player.
+   *
+   * @param id   id of the player
+   * @param kind kind of treasure
+   * @throws NoSuchElementException   if there's no player with the id
+   * @throws IllegalArgumentException if there's no treasure of the kind in the cave
+   * @throws IllegalStateException    if the player is dead
+   */
+  public void pickupTreasure(int id, TreasureKind kind) {
+    synchronized (locks[stripe(id)]) {
+      SharedPlayer player = alivePlayer(id);
+      int index = treasureIndex(player.cell, kind);
+      while (true) {
+        int count = treasure.get(index);
+        if (count == 0) {
+          throw new IllegalArgumentException("Item not available");
+        }
+
+        if (treasure.compareAndSet(index, count, count - 1)) {
+          player.treasure[kind.ordinal()] += 1;
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Shoots an arrow of the player straight to the given distance in the given direction.
+   *
+   * @param id        id of the player
+   * @param distance  number of caves the arrow flies through
+   * @param direction direction the arrow is shot in
+   * @return an empty string or You shoot an arrow into the darkness, or You killed an Otyugh
+   * @throws NoSuchElementException   if there's no player with the id
+   * @throws IllegalArgumentException if the distance is not positive
+   * @throws IllegalStateException    if the player is dead or has no arrows
+   */
+  public String shoot(int id, int distance, Move direction) {
+    if (distance <= 0) {
+      throw new IllegalArgumentException("distance must be > 0");
+    }
+
+    synchronized (locks[stripe(id)]) {
+      SharedPlayer player = alivePlayer(id);
+      if (player.arrows == 0) {
+        throw new IllegalStateException("No arrows left");
+      }
+      player.arrows -= 1;
+
+      int cell = player.cell;
+      for (int i = 0; i < distance; i++) {
+        if ((doors[cell] & direction.getMask()) == 0) {
+          return "\nYou shoot an arrow into the darkness\n";
+        }
+        cell = direction.step(cell, rows, cols);
+      }
+
+      while (true) {
+        int health = otyughHealth.get(cell);
+        if (health == 0) {
+          return "\nYou shoot an arrow into the darkness\n";
+        }
+
+        if (otyughHealth.compareAndSet(cell, health, health - 1)) {
+          return health == HIT ? "\nYou killed an Otyugh\n" : "";
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of players added to the dungeon, dead or alive.
+   *
+   * @return number of players
+   */
+  public int getPlayerCount() {
+    return nextId.get();
+  }
+
+  /**
+   * Gets the name of the player.
+   *
+   * @param id id of the player
+   * @return name of the player
+   * @throws NoSuchElementException if there's no player with the id
+   */
+  public String getPlayerName(int id) {
+    synchronized (locks[stripe(id)]) {
+      return player(id).name;
+    }
+  }
+
+  /**
+   * Gets the index of the cell of the player, {@code row * cols + col}.
+   *
+   * @param id id of the player
+   * @return index of the cell of the player
+   * @throws NoSuchElementException if there's no player with the id
+   */
+  public int getPlayerCell(int id) {
+    synchronized (locks[stripe(id)]) {
+      return player(id).cell;
+    }
+  }
+
+  /**
+   * Gets the number of arrows of the player.
+   *
+   * @param id id of the player
+   * @return number of arrows
+   * @throws NoSuchElementException if there's no player with the id
+   */
+  public int getPlayerArrows(int id) {
+    synchronized (locks[stripe(id)]) {
+      return player(id).arrows;
+    }
+  }
+
+  /**
+   * Gets the number of treasures of the given kind the player collected.
+   *
+   * @param id   id of the player
+   * @param kind kind of treasure
+   * @return number of treasures of the kind
+   * @throws NoSuchElementException if there's no player with the id
+   */
+  public int getPlayerTreasure(int id, TreasureKind kind) {
+    synchronized (locks[stripe(id)]) {
+      return player(id).treasure[kind.ordinal()];
+    }
+  }
+
+  /**
+   * Checks whether the player is alive.
+   *
+   * @param id id of the player
+   * @return true if the player is alive
+   * @throws NoSuchElementException if there's no player with the id
+   */
+  public boolean isAlive(int id) {
+    synchronized (locks[stripe(id)]) {
+      return player(id).alive;
+    }
+  }
+
+  /**
+   * Gets the bitmask of open doors of the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @return bitmask of open doors, see {@link Move#getMask()}
+   */
+  public int getDoorMask(int cell) {
+    return doors[cell];
+  }
+
+  /**
+   * Gets the number of arrows lying in the cave of the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @return number of arrows in the cave
+   */
+  public int getArrowCount(int cell) {
+    return caveArrows.get(cell);
+  }
+
+  /**
+   * Gets the number of arrows lying in the tunnel leading from the given cell in the given
+   * direction.
+   *
+   * @param cell      index of the cell, {@code row * cols + col}
+   * @param direction direction of the tunnel
+   * @return number of arrows in the tunnel
+   */
+  public int getTunnelArrowCount(int cell, Move direction) {
+    return tunnelArrows.get(tunnelIndex(cell, direction));
+  }
+
+  /**
+   * Gets the number of treasures of the given kind lying in the cave of the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @param kind kind of treasure
+   * @return number of treasures of the kind in the cave
+   */
+  public int getTreasureCount(int cell, TreasureKind kind) {
+    return treasure.get(treasureIndex(cell, kind));
+  }
+
+  /**
+   * Checks whether there's a living otyugh in the cave of the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @return true if there's an otyugh in the cave
+   */
+  public boolean hasOtyugh(int cell) {
+    return otyughHealth.get(cell) != 0;
+  }
+
+  /**
+   * Gets the stripe of the player table holding the player with the given id.
+   *
+   * @param id id of the player
+   * @return index of the stripe
+   */
+  private int stripe(int id) {
+    return id & (STRIPES - 1);
+  }
+
+  /**
+   * Gets the player with the given id. The lock of the stripe of the player must be held.
+   *
+   * @param id id of the player
+   * @return state of the player
+   * @throws NoSuchElementException if there's no player with the id
+   */
+  private SharedPlayer player(int id) {
+    SharedPlayer player = players.get(stripe(id)).get(id);
+    if (player == null) {
+      throw new NoSuchElementException("No player with id " + id);
+    }
+    return player;
+  }
+
+  /**
+   * Gets the player with the given id, who must be alive. The lock of the stripe of the player must
+   * be held.
+   *
+   * @param id id of the player
+   * @return state of the player
+   * @throws NoSuchElementException if there's no player with the id
+   * @throws IllegalStateException  if the player is dead
+   */
+  private SharedPlayer alivePlayer(int id) {
+    SharedPlayer player = player(id);
+    if (!(player.alive)) {
+      throw new IllegalStateException("Player is dead");
+    }
+    return player;
+  }
+
+  /**
+   * Gets the index of the arrows of the tunnel leading from the given cell in the given direction.
+   * Both caves at the ends of a tunnel share its arrows, which are kept at its west or north end.
+   *
+   * @param cell      index of the cell
+   * @param direction direction of the tunnel
+   * @return index in the tunnel arrows
+   */
+  private int tunnelIndex(int cell, Move direction) {
+    switch (direction) {
+      case EAST:
+        return 2 * cell;
+      case SOUTH:
+        return 2 * cell + 1;
+      case WEST:
+        return 2 * Move.WEST.step(cell, rows, cols);
+      default:
+        return 2 * Move.NORTH.step(cell, rows, cols) + 1;
+    }
+  }
+
+  /**
+   * Gets the index of the count of the given kind of treasure in the given cell.
+   *
+   * @param cell index of the cell
+   * @param kind kind of treasure
+   * @return index in the treasure counts
+   */
+  private int treasureIndex(int cell, TreasureKind kind) {
+    return cell * TREASURE_KINDS + kind.ordinal();
+  }
+
+  /**
+   * This class holds the state of a single player of the shared dungeon. It's only read and
+   * changed while holding the lock of the stripe of the player.
+   */
+  private static class SharedPlayer {
+
+    private final String name;
+    private final int[] treasure;
+    private final SplittableRandom random;
+    private int cell;
+    private int arrows;
+    private boolean alive;
+
+    /**
+     * Initializes a living player at the given cell, with 3 arrows and no treasure.
+     *
+     * @param name   name of the player
+     * @param cell   index of the cell of the player
+     * @param random source of randomness of the player
+     */
+    private SharedPlayer(String name, int cell, SplittableRandom random) {
+      this.name = name;
+      this.treasure = new int[TREASURE_KINDS];
+      this.random = random;
+      this.cell = cell;
+      this.arrows = 3;
+      this.alive = true;
+    }
+  }
+}
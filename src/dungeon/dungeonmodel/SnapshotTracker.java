@@ -0,0 +1,96 @@
+package dungeon.dungeonmodel;
+
+import java.util.BitSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class keeps track of the rows of a dungeon which changed since its last snapshot, so that a
+ * new snapshot only packs the caves of those rows again and shares every other row with the last
+ * snapshot. Taking a snapshot without any change hands out the last snapshot itself.
+ */
+class SnapshotTracker {
+
+  private final int rows;
+  private final int cols;
+  private final BitSet dirtyRows;
+  private DungeonSnapshot last;
+  private int[][] lastCells;
+  private int lastPlayerCell;
+
+  /**
+   * Initializes the tracker with every row changed, since there's no snapshot yet.
+   *
+   * @param rows number of rows in dungeon
+   * @param cols number of columns in dungeon
+   */
+  SnapshotTracker(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+    this.dirtyRows = new BitSet(rows);
+    this.dirtyRows.set(0, rows);
+  }
+
+  /**
+   * Marks the row of the given cell as changed.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   */
+  void markCell(int cell) {
+    dirtyRows.set(cell / cols);
+  }
+
+  /**
+   * Marks every row within the given distance of the row of the given cell as changed, wrapping
+   * around the edges of the dungeon. This covers every cave whose smell changes with the otyugh
+   * in the cell.
+   *
+   * @param cell   index of the cell, {@code row * cols + col}
+   * @param radius number of rows on each side of the cell
+   */
+  void markAround(int cell, int radius) {
+    if (2 * radius + 1 >= rows) {
+      markAll();
+      return;
+    }
+
+    int row = cell / cols;
+    for (int offset = -radius; offset <= radius; offset++) {
+      dirtyRows.set((row + offset + rows) % rows);
+    }
+  }
+
+  /**
+   * Marks every row as changed.
+   */
+  void markAll() {
+    dirtyRows.set(0, rows);
+  }
+
+  /**
+   * Takes a snapshot of the dungeon, packing the caves of the changed rows again.
+   *
+   * @param packer     packs the cave of the given cell, see {@link DungeonSnapshot#pack}
+   * @param playerCell index of the cell of the player, -1 if the player hasn't entered
+   * @return snapshot of the dungeon
+   */
+  DungeonSnapshot snapshot(IntUnaryOperator packer, int playerCell) {
+    if (last != null && dirtyRows.isEmpty() && lastPlayerCell == playerCell) {
+      return last;
+    }
+
+    // the table of rows is copied, but only the changed rows themselves
+    int[][] cells = lastCells == null ? new int[rows][] : lastCells.clone();
+    for (int row = dirtyRows.nextSetBit(0); row >= 0; row = dirtyRows.nextSetBit(row + 1)) {
+      int[] packed = new int[cols];
+      for (int col = 0; col < cols; col++) {
+        packed[col] = packer.applyAsInt(row * cols + col);
+      }
+      cells[row] = packed;
+    }
+    dirtyRows.clear();
+    lastCells = cells;
+    lastPlayerCell = playerCell;
+    last = new DungeonSnapshot(rows, cols, cells, playerCell);
+    return last;
+  }
+}
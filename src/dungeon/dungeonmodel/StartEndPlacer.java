@@ -0,0 +1,68 @@
+package dungeon.dungeonmodel;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class places the start and end location of a dungeon by the length of the path between them
+ * through the tunnels. It runs at most three searches over the dungeon and never retries, so the
+ * placement takes time linear in the number of cells.
+ */
+class StartEndPlacer {
+
+  /**
+   * Minimum number of moves between the start and end location.
+   */
+  static final int MIN_DISTANCE = 5;
+
+  private final GridSearch search;
+  private final int cells;
+  private final SplittableRandom random;
+
+  /**
+   * Initializes the placer over the given search of a dungeon.
+   *
+   * @param search search over the tunnels of the dungeon
+   * @param cells  number of cells in dungeon
+   * @param random source of randomness for the placement
+   */
+  StartEndPlacer(GridSearch search, int cells, SplittableRandom random) {
+    this.search = search;
+    this.cells = cells;
+    this.random = random;
+  }
+
+  /**
+   * Places the start and end location. The start is a random cell and the end is chosen uniformly
+   * from the cells at least {@link #MIN_DISTANCE} moves away from it. If there are no such cells, or
+   * if a maximally distant pair is asked for, the ends of a longest shortest path are found with two
+   * searches instead: the farthest cell from a random cell, and the farthest cell from that one.
+   * This finds the diameter of dungeons without cycles and a close pair on the others.
+   *
+   * @param maximallyDistant whether the start and end should be as far apart as possible
+   * @return index of the start cell followed by index of the end cell
+   */
+  int[] place(boolean maximallyDistant) {
+    int start = random.nextInt(cells);
+    int visitedCount = search.search(start, -1);
+
+    if (!(maximallyDistant)) {
+      // the cells are visited in order of distance, so the far enough ones are at the end
+      int first = visitedCount;
+      while (first > 0 && search.getDistance(search.getVisited(first - 1)) >= MIN_DISTANCE) {
+        first -= 1;
+      }
+      if (first < visitedCount) {
+        int end = search.getVisited(first + random.nextInt(visitedCount - first));
+        return new int[] {start, end};
+      }
+    }
+
+    start = search.getVisited(visitedCount - 1);
+    visitedCount = search.search(start, -1);
+    int end = search.getVisited(visitedCount - 1);
+    if (random.nextBoolean()) {
+      return new int[] {end, start};
+    }
+    return new int[] {start, end};
+  }
+}
@@ -10,14 +10,32 @@ import java.awt.event.MouseEvent;
 public class DungeonMouseAdaptor extends MouseAdapter {
 
   DungeonGuiController mouseListener;
+  private final int tileSize;
 
   /**
-   * Initializes the gui based controller for listening to mouse events.
+   * Initializes the gui based controller for listening to mouse events, on cells drawn at the base
+   * size of a tile.
    *
    * @param mouseListener gui based controller
    */
   public DungeonMouseAdaptor(DungeonGuiController mouseListener) {
+    this(mouseListener, SpriteCache.BASE_TILE_SIZE);
+  }
+
+  /**
+   * Initializes the gui based controller for listening to mouse events, on cells drawn at the given
+   * size.
+   *
+   * @param mouseListener gui based controller
+   * @param tileSize      size of a cell in pixels, see {@link DungeonPanel#getTileSize()}
+   * @throws IllegalArgumentException if the tile size is not positive
+   */
+  public DungeonMouseAdaptor(DungeonGuiController mouseListener, int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
     this.mouseListener = mouseListener;
+    this.tileSize = tileSize;
   }
 
   /**
@@ -30,7 +48,7 @@ public class DungeonMouseAdaptor extends MouseAdapter {
   @Override
   public void mouseClicked(MouseEvent e) {
     super.mouseClicked(e);
-    mouseListener.handleCellClick((int) Math.floor(e.getY() / 128d),
-        (int) Math.floor(e.getX() / 128d));
+    mouseListener.handleCellClick(Math.floorDiv(e.getY(), tileSize),
+        Math.floorDiv(e.getX(), tileSize));
   }
 }
@@ -1,86 +1,85 @@
 package dungeon.dungeonview;
 
-import dungeon.location.Location;
-import dungeon.treasure.Treasure;
-import java.awt.Color;
+import dungeon.dungeonmodel.DungeonSnapshot;
+import dungeon.treasure.TreasureKind;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.GridLayout;
 import java.awt.Image;
 import java.awt.Point;
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import javax.imageio.ImageIO;
-import javax.swing.ImageIcon;
-import javax.swing.JLabel;
+import java.awt.Rectangle;
 import javax.swing.JPanel;
-import javax.swing.border.LineBorder;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
 
 /**
- * This panel represents the region where the dungeon game must be drawn.
+ * This panel represents the region where the dungeon game must be drawn. Every image is loaded
+ * once by a {@link SpriteCache}, so painting the dungeon never reads from the disk. The tunnels of
+ * the visited cells are kept drawn in a {@link TileLayer}, so painting the dungeon copies the layer
+ * and only draws the otyughs, treasure, arrows, smells and the player over it. Only the cells
+ * within the area being repainted are drawn, so inside a scroll pane the work done per frame
+ * depends on the size of the view rather than the size of the dungeon.
  */
-public class DungeonPanel extends JPanel {
+public class DungeonPanel extends JPanel implements Scrollable {
 
   ReadonlyDungeonModel readOnlyDungeonModel;
-  JLabel[][] jLabels;
-  List<Location> visitedStates;
+  private final SpriteCache sprites;
+  private final TileLayer tiles;
+  private long paintedVersion;
 
   /**
-   * Initializes the read only dungeon model for use by the panel. Stores the visited states of the
-   * player to display in the gui. Initializes the dungeon locations with black cells except for the
-   * cell where the player is present.
+   * Initializes the read only dungeon model for use by the panel. The caves visited by the player
+   * are read from the model, and the others are drawn as black cells.
    *
    * @param readOnlyDungeonModel read only dungeon model for use by panel
    */
   public DungeonPanel(ReadonlyDungeonModel readOnlyDungeonModel) {
     this.readOnlyDungeonModel = readOnlyDungeonModel;
-    visitedStates = new ArrayList<>();
+    this.sprites = new SpriteCache(SpriteCache.BASE_TILE_SIZE);
 
-    Location[][] dungeon = this.readOnlyDungeonModel.getLocationGrid();
     int rows = readOnlyDungeonModel.getRows();
     int cols = readOnlyDungeonModel.getColumns();
-    this.visitedStates.add(readOnlyDungeonModel.getPlayer().getCurrentLocation());
+    int tileSize = sprites.getTileSize();
+    this.tiles = new TileLayer(rows, cols, sprites,
+        cell -> this.readOnlyDungeonModel.snapshot().getDoorMask(cell / cols, cell % cols));
+    this.paintedVersion = readOnlyDungeonModel.getVersion();
 
-    jLabels = new JLabel[rows][cols];
-
-    setLayout(new GridLayout(rows, cols, 0, 0));
-    setSize(rows * 128, cols * 128);
+    setPreferredSize(new Dimension(cols * tileSize, rows * tileSize));
+    setSize(cols * tileSize, rows * tileSize);
+  }
 
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < cols; j++) {
-        List<String> moves = dungeon[i][j].getPossibleMoves();
-        Collections.sort(moves);
-        String imgName = "";
-        for (String str : moves) {
-          imgName = imgName.concat("" + str.charAt(0));
-        }
+  /**
+   * Gets the size in pixels of a cell of the dungeon, so positions within the panel can be mapped
+   * to cells.
+   *
+   * @return size of a cell in pixels
+   */
+  public int getTileSize() {
+    return sprites.getTileSize();
+  }
 
-        if (!(this.visitedStates.contains(dungeon[i][j]))) {
-          jLabels[i][j] = new JLabel(
-              new ImageIcon(new ImageIcon(".\\res"
-                  + "\\dungeon-images\\dungeon-images\\blank.png").getImage()
-                  .getScaledInstance(128, 128, Image.SCALE_SMOOTH)));
-        } else {
-          jLabels[i][j] = new JLabel(
-              new ImageIcon(new ImageIcon(".\\res"
-                  + "\\dungeon-images\\dungeon-images\\color-cells\\" + imgName
-                  + ".png").getImage()
-                  .getScaledInstance(128, 128, Image.SCALE_SMOOTH)));
-        }
+  /**
+   * Repaints only the cells which changed since the last call, or the whole dungeon if too much
+   * changed to tell which cells did.
+   */
+  public void repaintChanges() {
+    int[] changed = this.readOnlyDungeonModel.getChangedCells(this.paintedVersion);
+    this.paintedVersion = this.readOnlyDungeonModel.getVersion();
+    if (changed == null) {
+      repaint();
+      return;
+    }
 
-        jLabels[i][j].setBorder(new LineBorder(Color.BLACK));
-        this.add(jLabels[i][j]);
-      }
+    int cols = this.readOnlyDungeonModel.getColumns();
+    int tileSize = sprites.getTileSize();
+    for (int cell : changed) {
+      repaint((cell % cols) * tileSize, (cell / cols) * tileSize, tileSize, tileSize);
     }
   }
 
   /**
    * Overrides the paint method of the JPanel class. Draws the game images and updates based on the
-   * player actions in the view.
+   * player actions in the view. Only the cells within the area being repainted are drawn.
    *
    * @param g graphics object
    */
@@ -89,137 +88,131 @@ public class DungeonPanel extends JPanel {
     super.paint(g);
     Graphics2D g2d = (Graphics2D) g;
 
-    Location[][] dungeon = this.readOnlyDungeonModel.getLocationGrid();
-    int rows = this.readOnlyDungeonModel.getRows();
-    int cols = this.readOnlyDungeonModel.getColumns();
-    this.visitedStates.add(this.readOnlyDungeonModel.getPlayer().getCurrentLocation());
+    DungeonSnapshot snapshot = this.readOnlyDungeonModel.snapshot();
+    int rows = snapshot.getRows();
+    int cols = snapshot.getColumns();
+    int playerRow = snapshot.getPlayerRow();
+    int playerCol = snapshot.getPlayerColumn();
+
+    // the cells are laid out in a grid of equal tiles, so the ones being repainted are found
+    // from the clip without looking at the others
+    Rectangle clip = g.getClipBounds();
+    int tileSize = sprites.getTileSize();
+    int firstRow = 0;
+    int lastRow = rows - 1;
+    int firstCol = 0;
+    int lastCol = cols - 1;
+    if (clip != null) {
+      firstRow = Math.max(0, clip.y / tileSize);
+      lastRow = Math.min(rows - 1, (clip.y + clip.height - 1) / tileSize);
+      firstCol = Math.max(0, clip.x / tileSize);
+      lastCol = Math.min(cols - 1, (clip.x + clip.width - 1) / tileSize);
+    }
+
+    for (int i = firstRow; i <= lastRow; i++) {
+      for (int j = firstCol; j <= lastCol; j++) {
+        if (this.readOnlyDungeonModel.isVisited(i, j)) {
+          this.tiles.reveal(i, j);
+        }
+      }
+    }
+    this.tiles.paint(g2d, clip);
+
+    Point point = new Point();
+    for (int i = firstRow; i <= lastRow; i++) {
+      for (int j = firstCol; j <= lastCol; j++) {
+        if (!(this.tiles.isRevealed(i, j))) {
+          continue;
+        }
+        point.setLocation(j * tileSize, i * tileSize);
+
+        boolean otyugh = snapshot.hasOtyugh(i, j);
+        if (otyugh) {
+          drawSprite(g2d, sprites.getOtyugh(), point, 32, 32);
+        } else if (i == playerRow && j == playerCol) {
+          drawSprite(g2d, sprites.getPlayer(), point, 10, 27);
+        }
+
+        if (snapshot.getArrowCount(i, j) > 0) {
+          drawSprite(g2d, sprites.getArrow(), point, 53, 25);
+        }
+
+        if (snapshot.getTreasureCount(i, j, TreasureKind.RUBY) > 0) {
+          drawSprite(g2d, sprites.getTreasure(TreasureKind.RUBY), point, 6, 55);
+        }
 
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < cols; j++) {
+        if (snapshot.getTreasureCount(i, j, TreasureKind.DIAMOND) > 0) {
+          drawSprite(g2d, sprites.getTreasure(TreasureKind.DIAMOND), point, 58, 100);
+        }
 
-        List<String> moves = dungeon[i][j].getPossibleMoves();
-        Collections.sort(moves);
-        String imgName = "";
-        for (String str : moves) {
-          imgName = imgName.concat("" + str.charAt(0));
+        if (snapshot.getTreasureCount(i, j, TreasureKind.SAPPHIRE) > 0) {
+          drawSprite(g2d, sprites.getTreasure(TreasureKind.SAPPHIRE), point, 100, 52);
         }
 
-        Point point = jLabels[i][j].getLocation();
-
-        if (!(this.visitedStates.contains(dungeon[i][j]))) {
-          try {
-            g2d.drawImage(ImageIO.read(
-                        new File(".\\res"
-                            + "\\dungeon-images\\dungeon-images\\blank.png"))
-                    .getScaledInstance(128, 128, Image.SCALE_SMOOTH),
-                point.x, point.y, null);
-          } catch (IOException e) {
-            System.out.println("IOException " + e);
-          }
-        } else {
-          try {
-            g2d.drawImage(ImageIO.read(
-                        new File(".\\res"
-                            + "\\dungeon-images\\dungeon-images\\color-cells\\" + imgName
-                            + ".png"))
-                    .getScaledInstance(128, 128, Image.SCALE_SMOOTH),
-                point.x, point.y, null);
-          } catch (IOException e) {
-            System.out.println("IOException " + e);
-          }
-
-          if (dungeon[i][j].getOtyugh() != null) {
-            try {
-              g2d.drawImage(ImageIO.read(
-                      new File(".\\res\\dungeon-images\\dungeon-images\\otyugh_1.png")),
-                  point.x + 32, point.y + 32, null);
-            } catch (IOException e) {
-              System.out.println("IOException " + e);
-            }
-          }
-
-          if (readOnlyDungeonModel.getPlayer().getCurrentLocation().getPosition().getX() == i &&
-              readOnlyDungeonModel.getPlayer().getCurrentLocation().getPosition().getY() == j) {
-            if (readOnlyDungeonModel.getPlayer().getCurrentLocation().getOtyugh() == null) {
-              try {
-                g2d.drawImage(ImageIO.read(
-                            new File(".\\res\\dungeon-images\\dungeon-images\\dungeon_master.png"))
-                        .getScaledInstance(120, 50, Image.SCALE_SMOOTH),
-                    point.x + 10, point.y + 27, null);
-              } catch (IOException e) {
-                System.out.println("IOException " + e);
-              }
-            }
-          }
-
-          if (dungeon[i][j].getArrowCount() > 0) {
-            try {
-              g2d.drawImage(ImageIO.read(
-                          new File(".\\res"
-                              + "\\dungeon-images\\dungeon-images\\arrow-black.png"))
-                      .getScaledInstance(30, 6, Image.SCALE_SMOOTH),
-                  point.x + 53, point.y + 25, null);
-            } catch (IOException e) {
-              System.out.println("IOException " + e);
-            }
-          }
-
-          if (!(dungeon[i][j].getTreasure().isEmpty())) {
-            HashSet<Treasure> treasures = new HashSet<>(dungeon[i][j].getTreasure());
-            for (Treasure treasure : treasures) {
-              try {
-                if (treasure.toString().equals("Ruby")) {
-                  g2d.drawImage(ImageIO.read(
-                              new File(".\\res"
-                                  + "\\dungeon-images\\dungeon-images\\ruby.png"))
-                          .getScaledInstance(12, 14, Image.SCALE_SMOOTH),
-                      point.x + 6, point.y + 55, null);
-                } else if (treasure.toString().equals("Diamond")) {
-                  g2d.drawImage(ImageIO.read(
-                              new File(".\\res"
-                                  + "\\dungeon-images\\dungeon-images\\diamond.png"))
-                          .getScaledInstance(14, 13, Image.SCALE_SMOOTH),
-                      point.x + 58, point.y + 100, null);
-                } else if (treasure.toString().equals("Sapphire")) {
-                  g2d.drawImage(ImageIO.read(
-                              new File(".\\res"
-                                  + "\\dungeon-images\\dungeon-images\\emerald.png"))
-                          .getScaledInstance(15, 17, Image.SCALE_SMOOTH),
-                      point.x + 100, point.y + 52, null);
-                }
-
-              } catch (IOException e) {
-                System.out.println("IOException " + e);
-              }
-            }
-          }
-
-          if (dungeon[i][j].toString().contains("A less pungent smell is coming from nearby")
-              && dungeon[i][j].getOtyugh() == null) {
-            try {
-              g2d.drawImage(ImageIO.read(
-                      new File(".\\res"
-                          + "\\dungeon-images\\dungeon-images\\stench01.png")),
-                  point.x + 32, point.y + 32, null);
-            } catch (IOException e) {
-              System.out.println("IOException " + e);
-            }
-          }
-
-          if (dungeon[i][j].toString().contains("A terrible smell is coming from nearby")
-              && dungeon[i][j].getOtyugh() == null) {
-            try {
-              g2d.drawImage(ImageIO.read(
-                      new File(".\\res"
-                          + "\\dungeon-images\\dungeon-images\\stench02.png")),
-                  point.x + 32, point.y + 32, null);
-            } catch (IOException e) {
-              System.out.println("IOException " + e);
-            }
-          }
+        Image smell = sprites.getSmell(snapshot.getSmellLevel(i, j));
+        if (smell != null && !(otyugh)) {
+          drawSprite(g2d, smell, point, 32, 32);
         }
       }
     }
   }
 
+  @Override
+  public Dimension getPreferredScrollableViewportSize() {
+    return getPreferredSize();
+  }
+
+  /**
+   * Scrolls by a quarter of a cell at a time.
+   *
+   * @param visibleRect visible area of the panel
+   * @param orientation orientation of the scroll bar
+   * @param direction   direction of the scroll
+   * @return number of pixels to scroll
+   */
+  @Override
+  public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+    return Math.max(1, sprites.getTileSize() / 4);
+  }
+
+  /**
+   * Scrolls by a page at a time, rounded down to whole cells.
+   *
+   * @param visibleRect visible area of the panel
+   * @param orientation orientation of the scroll bar
+   * @param direction   direction of the scroll
+   * @return number of pixels to scroll
+   */
+  @Override
+  public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+    int tileSize = sprites.getTileSize();
+    int extent = orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    return Math.max(tileSize, extent / tileSize * tileSize);
+  }
+
+  @Override
+  public boolean getScrollableTracksViewportWidth() {
+    return false;
+  }
+
+  @Override
+  public boolean getScrollableTracksViewportHeight() {
+    return false;
+  }
+
+  /**
+   * Draws a sprite within a tile, at the given offset on a tile of the base size.
+   *
+   * @param g2d     graphics object
+   * @param sprite  image of the sprite
+   * @param tile    top left corner of the tile
+   * @param offsetX horizontal offset of the sprite on a tile of the base size
+   * @param offsetY vertical offset of the sprite on a tile of the base size
+   */
+  private void drawSprite(Graphics2D g2d, Image sprite, Point tile, int offsetX, int offsetY) {
+    int tileSize = sprites.getTileSize();
+    g2d.drawImage(sprite, tile.x + offsetX * tileSize / SpriteCache.BASE_TILE_SIZE,
+        tile.y + offsetY * tileSize / SpriteCache.BASE_TILE_SIZE, null);
+  }
+
 }
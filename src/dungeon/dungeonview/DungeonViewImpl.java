@@ -7,7 +7,6 @@ import java.awt.Color;
 import java.awt.Desktop;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.ScrollPane;
 import java.io.File;
 import java.io.IOException;
 import javax.swing.JFrame;
@@ -16,9 +15,11 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.JTextPane;
+import javax.swing.JViewport;
 import javax.swing.Timer;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
@@ -84,9 +85,9 @@ public class DungeonViewImpl extends JFrame implements DungeonView {
     this.readOnlyDungeonModel = readOnlyDungeonModel;
     this.jPanel = new DungeonPanel(readOnlyDungeonModel);
 
-    ScrollPane jScrollPane = new ScrollPane();
+    JScrollPane jScrollPane = new JScrollPane(jPanel);
     jScrollPane.setPreferredSize(new Dimension(500, 500));
-    jScrollPane.add(jPanel);
+    jScrollPane.getViewport().setScrollMode(JViewport.BLIT_SCROLL_MODE);
     add(jScrollPane, BorderLayout.CENTER);
 
     JMenuBar menuBar = new JMenuBar();
@@ -102,8 +103,10 @@ public class DungeonViewImpl extends JFrame implements DungeonView {
       String isWrapping = String.valueOf(readOnlyDungeonModel.isNonWrapping());
       String otyughs = String.valueOf(readOnlyDungeonModel.getOtyughCount());
       String nItems = String.valueOf(readOnlyDungeonModel.getPercentageOfItems());
+      String seed = String.valueOf(readOnlyDungeonModel.getSeed());
 
-      Driver.main(new String[]{"gui", isWrapping, rows, cols, interconnectivity, otyughs, nItems});
+      Driver.main(new String[]{"gui", isWrapping, rows, cols, interconnectivity, otyughs, nItems,
+          seed});
       this.dispose();
     });
 
@@ -161,7 +164,8 @@ public class DungeonViewImpl extends JFrame implements DungeonView {
 
   @Override
   public void addClickListener(DungeonGuiController mouseListener) {
-    this.jPanel.addMouseListener(new DungeonMouseAdaptor(mouseListener));
+    this.jPanel.addMouseListener(new DungeonMouseAdaptor(mouseListener,
+        this.jPanel.getTileSize()));
   }
 
   @Override
@@ -175,20 +179,20 @@ public class DungeonViewImpl extends JFrame implements DungeonView {
   public void refresh() {
     if (readOnlyDungeonModel.getPlayer().getCurrentLocation().getOtyugh() == null) {
       if (readOnlyDungeonModel.getPlayer().getCurrentLocation()
-          == readOnlyDungeonModel.getEndState()) {
+          .equals(readOnlyDungeonModel.getEndState())) {
         this.jLabel.setText("Player wins");
-        this.jPanel.repaint();
+        this.jPanel.repaintChanges();
         return;
       }
     } else {
       this.jLabel.setText("Game Over !! Player is Dead");
-      this.jPanel.repaint();
+      this.jPanel.repaintChanges();
       return;
     }
 
     this.playerDescription.setText(readOnlyDungeonModel.getPlayerDescription());
     this.jLabel.setText(readOnlyDungeonModel.getPlayerLocationDescription());
-    this.jPanel.repaint();
+    this.jPanel.repaintChanges();
   }
 
   @Override
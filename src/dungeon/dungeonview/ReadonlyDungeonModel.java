@@ -1,7 +1,13 @@
 package dungeon.dungeonview;
 
+import dungeon.dungeonmodel.DungeonSnapshot;
 import dungeon.location.Location;
+import dungeon.player.ArrowFlight;
 import dungeon.player.Player;
+import dungeon.treasure.TreasureKind;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -18,6 +24,39 @@ public interface ReadonlyDungeonModel {
    */
   String getState();
 
+  /**
+   * Writes the current state of the dungeon to the given output one location at a time, in the
+   * same format as {@link #getState()}, without building the whole state in memory.
+   *
+   * @param out output the state is written to
+   * @throws IOException if the output can't be written to
+   */
+  void writeState(Appendable out) throws IOException;
+
+  /**
+   * Writes the current state of the locations in the given range of rows to the given output one
+   * location at a time.
+   *
+   * @param out     output the state is written to
+   * @param fromRow first row to be written
+   * @param toRow   row after the last row to be written
+   * @throws IOException              if the output can't be written to
+   * @throws IllegalArgumentException if the range of rows is not within the dungeon
+   */
+  void writeState(Appendable out, int fromRow, int toRow) throws IOException;
+
+  /**
+   * Writes the current state of the locations in the given range of rows to the given stream as
+   * gzip compressed UTF-8 text. The stream is left open.
+   *
+   * @param out     stream the compressed state is written to
+   * @param fromRow first row to be written
+   * @param toRow   row after the last row to be written
+   * @throws IOException              if the stream can't be written to
+   * @throws IllegalArgumentException if the range of rows is not within the dungeon
+   */
+  void writeCompressedState(OutputStream out, int fromRow, int toRow) throws IOException;
+
   /**
    * Description of the player which includes player's name and treasures collected until now. It
    * throws an illegal state exception if the enterPlayer method hasn't been invoked first because
@@ -57,6 +96,21 @@ public interface ReadonlyDungeonModel {
    */
   List<Location> getBFSTraversal();
 
+  /**
+   * Get the shortest path through the tunnels from the start state of the dungeon to the end state.
+   *
+   * @return locations on the path, from the start location to the end location
+   */
+  List<Location> getShortestPath();
+
+  /**
+   * Get the number of moves on the shortest path from the start state of the dungeon to the end
+   * state.
+   *
+   * @return distance from the start location to the end location
+   */
+  int getShortestPathDistance();
+
   /**
    * Get the location grid of dungeon.
    *
@@ -64,6 +118,65 @@ public interface ReadonlyDungeonModel {
    */
   Location[][] getLocationGrid();
 
+  /**
+   * Takes an immutable snapshot of the caves of the dungeon and the position of the player, which
+   * other threads, such as a renderer, can read without locks while the dungeon keeps changing.
+   * The rows without any change since the last snapshot are shared with it, so taking a snapshot
+   * costs time proportional to the rows changed since. It must be called from the thread changing
+   * the dungeon.
+   *
+   * @return snapshot of the dungeon
+   */
+  DungeonSnapshot snapshot();
+
+  /**
+   * Gets the current version of the dungeon, which grows with every change to a cave or the
+   * position of the player.
+   *
+   * @return current version of the dungeon
+   */
+  long getVersion();
+
+  /**
+   * Gets the version of the dungeon the cave at the given position last changed at.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return version of the cave
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  long getCellVersion(int row, int col);
+
+  /**
+   * Gets the caves changed after the given version of the dungeon, each listed once, so a reader
+   * only needs to read those caves again. Only the most recent changes are kept, so a reader which
+   * fell too far behind has to read every cave again.
+   *
+   * @param since version of the dungeon the reader last saw
+   * @return indices of the changed caves, {@code row * cols + col}, or null if every cave has to
+   *         be read again
+   * @throws IllegalArgumentException if the version is negative or newer than the current one
+   */
+  int[] getChangedCells(long since);
+
+  /**
+   * Checks whether the player has visited the cave at the given position since entering the
+   * dungeon.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return true if the player has visited the cave
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  boolean isVisited(int row, int col);
+
+  /**
+   * Gets the caves the player has visited since entering the dungeon, one bit per cave.
+   *
+   * @return copy of the visited caves, indexed by {@code row * cols + col}
+   */
+  BitSet getVisitedCells();
+
   /**
    * Get the number of rows in dungeon.
    *
@@ -92,6 +205,32 @@ public interface ReadonlyDungeonModel {
    */
   Player getPlayer();
 
+  /**
+   * Gets the largest path distance an otyugh can be smelled from.
+   *
+   * @return scent radius of the dungeon
+   */
+  int getScentRadius();
+
+  /**
+   * Gets the way the arrows shot by the player fly.
+   *
+   * @return straight or curved arrow flight
+   */
+  ArrowFlight getArrowFlight();
+
+  /**
+   * Gets the intensity of the smell of otyughs in the cave at the given position. It's 0 without a
+   * smell, and a smell is terrible from the intensity of a single otyugh next to the cave onwards,
+   * see {@link dungeon.location.SmellField#level(int, int)}.
+   *
+   * @param row row of the cave
+   * @param col column of the cave
+   * @return intensity of the smell
+   * @throws IllegalArgumentException if the position is not within the dungeon
+   */
+  int getSmellIntensity(int row, int col);
+
   /**
    * Gets the total count of treasures in the dungeon.
    *
@@ -100,12 +239,49 @@ public interface ReadonlyDungeonModel {
   int getTreasureCount();
 
   /**
-   * Gets the total count of arrows in the dungeon.
+   * Gets the total count of treasures of the given kind in the dungeon.
+   *
+   * @param kind kind of treasure
+   * @return total count of treasures of the kind in the dungeon
+   */
+  int getTreasureCount(TreasureKind kind);
+
+  /**
+   * Gets the total count of arrows in the dungeon, in caves and tunnels.
    *
    * @return total count of arrows in the dungeon
    */
   int getArrowCount();
 
+  /**
+   * Gets the total count of arrows lying in the caves of the dungeon.
+   *
+   * @return total count of arrows in caves
+   */
+  int getCaveArrowCount();
+
+  /**
+   * Gets the total count of arrows lying in the tunnels of the dungeon.
+   *
+   * @return total count of arrows in tunnels
+   */
+  int getTunnelArrowCount();
+
+  /**
+   * Gets the count of arrows held by the player, 0 if the player hasn't entered.
+   *
+   * @return count of arrows held by the player
+   */
+  int getPlayerArrowCount();
+
+  /**
+   * Gets the seed the dungeon's randomness is drawn from. A dungeon built with the same seed and
+   * characteristics has the same layout.
+   *
+   * @return seed of the dungeon
+   */
+  long getSeed();
+
   /**
    * Returns a boolean value indicating if a dungeon is wrapping or not.
    *
@@ -0,0 +1,243 @@
+package dungeon.dungeonview;
+
+import dungeon.player.Move;
+import dungeon.treasure.TreasureKind;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * This class loads every image of the dungeon once and keeps it scaled to the size it's drawn at,
+ * so drawing the dungeon never reads from the disk. The images are read from the classpath under
+ * {@code /dungeon-images/dungeon-images}, or from the {@code res} folder when they're not on the
+ * classpath, and are kept as images compatible with the screen so they're drawn without converting
+ * them. The image of a cell is looked up by the bitmask of its open doors.
+ */
+class SpriteCache {
+
+  /**
+   * Size in pixels of the tiles the sprites were drawn for.
+   */
+  static final int BASE_TILE_SIZE = 128;
+
+  private static final String FOLDER = "dungeon-images/dungeon-images/";
+
+  private final int tileSize;
+  private final Image[] cells;
+  private final Image blank;
+  private final Image otyugh;
+  private final Image player;
+  private final Image arrow;
+  private final Image[] treasure;
+  private final Image lessPungent;
+  private final Image terrible;
+
+  /**
+   * Loads every image of the dungeon, scaled for tiles of the given size.
+   *
+   * @param tileSize size of a tile in pixels
+   * @throws IllegalArgumentException if the tile size is not positive
+   * @throws IllegalStateException    if an image is missing or can't be read
+   */
+  SpriteCache(int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive");
+    }
+
+    this.tileSize = tileSize;
+    this.blank = load("blank.png", BASE_TILE_SIZE, BASE_TILE_SIZE);
+    this.cells = new Image[1 << Move.values().length];
+    for (int mask = 0; mask < cells.length; mask++) {
+      String name = cellName(mask);
+      cells[mask] = name.isEmpty() ? blank : load("color-cells/" + name + ".png", BASE_TILE_SIZE,
+          BASE_TILE_SIZE);
+    }
+    this.otyugh = load("otyugh_1.png", -1, -1);
+    this.player = load("dungeon_master.png", 120, 50);
+    this.arrow = load("arrow-black.png", 30, 6);
+    this.treasure = new Image[TreasureKind.values().length];
+    this.treasure[TreasureKind.RUBY.ordinal()] = load("ruby.png", 12, 14);
+    this.treasure[TreasureKind.DIAMOND.ordinal()] = load("diamond.png", 14, 13);
+    this.treasure[TreasureKind.SAPPHIRE.ordinal()] = load("emerald.png", 15, 17);
+    this.lessPungent = load("stench01.png", -1, -1);
+    this.terrible = load("stench02.png", -1, -1);
+  }
+
+  /**
+   * Gets the name of the image of a cell with the given open doors, made of the first letters of
+   * the directions of the doors in alphabetical order, such as ENS.
+   *
+   * @param doorMask bitmask of open doors, see {@link Move#getMask()}
+   * @return name of the image, empty if there are no doors
+   */
+  static String cellName(int doorMask) {
+    StringBuilder sb = new StringBuilder();
+    for (Move move : new Move[] {Move.EAST, Move.NORTH, Move.SOUTH, Move.WEST}) {
+      if ((doorMask & move.getMask()) != 0) {
+        sb.append(move.toString().charAt(0));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Gets the size of the tiles the images are scaled for.
+   *
+   * @return size of a tile in pixels
+   */
+  int getTileSize() {
+    return this.tileSize;
+  }
+
+  /**
+   * Gets the image of a visited cell with the given open doors.
+   *
+   * @param doorMask bitmask of open doors, see {@link Move#getMask()}
+   * @return image of the cell
+   */
+  Image getCell(int doorMask) {
+    return this.cells[doorMask & (cells.length - 1)];
+  }
+
+  /**
+   * Gets the image of a cell which hasn't been visited.
+   *
+   * @return image of an unknown cell
+   */
+  Image getBlank() {
+    return this.blank;
+  }
+
+  /**
+   * Gets the image of an otyugh.
+   *
+   * @return image of an otyugh
+   */
+  Image getOtyugh() {
+    return this.otyugh;
+  }
+
+  /**
+   * Gets the image of the player.
+   *
+   * @return image of the player
+   */
+  Image getPlayer() {
+    return this.player;
+  }
+
+  /**
+   * Gets the image of arrows lying in a cave.
+   *
+   * @return image of an arrow
+   */
+  Image getArrow() {
+    return this.arrow;
+  }
+
+  /**
+   * Gets the image of the given kind of treasure.
+   *
+   * @param kind kind of treasure
+   * @return image of the treasure
+   */
+  Image getTreasure(TreasureKind kind) {
+    return this.treasure[kind.ordinal()];
+  }
+
+  /**
+   * Gets the image of a smell of the given level.
+   *
+   * @param level level of the smell, see {@link dungeon.location.SmellField#level(int, int)}
+   * @return image of the smell, null if there's no smell
+   */
+  Image getSmell(int level) {
+    if (level >= 2) {
+      return this.terrible;
+    }
+
+    if (level == 1) {
+      return this.lessPungent;
+    }
+    return null;
+  }
+
+  /**
+   * Loads the image with the given name, scaled to the given size on a tile of the base size.
+   *
+   * @param name   name of the image within the image folder
+   * @param width  width of the image on a tile of the base size, -1 for the width of the file
+   * @param height height of the image on a tile of the base size, -1 for the height of the file
+   * @return scaled image
+   * @throws IllegalStateException if the image can't be read
+   */
+  private Image load(String name, int width, int height) {
+    BufferedImage image = read(name);
+    if (width < 0) {
+      width = image.getWidth();
+      height = image.getHeight();
+    }
+    int scaledWidth = Math.max(1, width * tileSize / BASE_TILE_SIZE);
+    int scaledHeight = Math.max(1, height * tileSize / BASE_TILE_SIZE);
+
+    BufferedImage scaled = createImage(scaledWidth, scaledHeight, Transparency.TRANSLUCENT);
+    Graphics2D g2d = scaled.createGraphics();
+    g2d.drawImage(image.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH), 0, 0,
+        null);
+    g2d.dispose();
+    return scaled;
+  }
+
+  /**
+   * Reads the image with the given name from the classpath, or from the res folder.
+   *
+   * @param name name of the image within the image folder
+   * @return image read
+   * @throws IllegalStateException if the image is missing or can't be read
+   */
+  private BufferedImage read(String name) {
+    BufferedImage image = null;
+    try (InputStream in = SpriteCache.class.getResourceAsStream("/" + FOLDER + name)) {
+      if (in != null) {
+        image = ImageIO.read(in);
+      } else {
+        File file = new File("res" + File.separator + FOLDER.replace('/', File.separatorChar)
+            + name.replace('/', File.separatorChar));
+        if (!(file.isFile())) {
+          throw new IllegalStateException("Missing image " + name);
+        }
+        image = ImageIO.read(file);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read image " + name, e);
+    }
+
+    if (image == null) {
+      throw new IllegalStateException("Unknown format of image " + name);
+    }
+    return image;
+  }
+
+  /**
+   * Creates an image of the given size, compatible with the screen if there is one.
+   *
+   * @param width        width of the image
+   * @param height       height of the image
+   * @param transparency transparency of the image, see {@link Transparency}
+   * @return empty image
+   */
+  static BufferedImage createImage(int width, int height, int transparency) {
+    if (GraphicsEnvironment.isHeadless()) {
+      return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+          ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+    return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+        .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+  }
+}
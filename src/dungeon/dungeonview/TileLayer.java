@@ -0,0 +1,213 @@
+package dungeon.dungeonview;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class keeps the tunnels of the dungeon drawn in off-screen images, since they never change
+ * once the dungeon is built. A cell is drawn hidden in fog until it's revealed, which draws its
+ * tunnels. The dungeon is split into square chunks of tiles, and a chunk only gets its own image
+ * when one of its cells is revealed; the others all share a single image full of fog. At most
+ * {@link #MAX_CHUNKS} images are kept, dropping the least recently drawn one, and a dropped chunk
+ * is drawn again from the door masks of its revealed cells when it comes back into view. Drawing
+ * the layer takes one copy of an image per chunk in view.
+ */
+class TileLayer {
+
+  /**
+   * Number of tiles along each side of a chunk.
+   */
+  static final int CHUNK_TILES = 4;
+
+  /**
+   * Number of chunk images kept at most, enough to cover a full screen of chunks.
+   */
+  static final int MAX_CHUNKS = 48;
+
+  private final int rows;
+  private final int cols;
+  private final int tileSize;
+  private final SpriteCache sprites;
+  private final IntUnaryOperator doorMasks;
+  private final int chunkCols;
+  private final BufferedImage fog;
+  private final Map<Integer, BufferedImage> chunks;
+  private final BitSet revealed;
+  private final BitSet revealedChunks;
+
+  /**
+   * Initializes the layer of a dungeon with every cell hidden in fog.
+   *
+   * @param rows      number of rows in dungeon
+   * @param cols      number of columns in dungeon
+   * @param sprites   images of the dungeon, scaled to the size of a tile
+   * @param doorMasks bitmask of open doors of each cell by its index {@code row * cols + col}, see
+   *                  {@link dungeon.player.Move#getMask()}
+   */
+  TileLayer(int rows, int cols, SpriteCache sprites, IntUnaryOperator doorMasks) {
+    this.rows = rows;
+    this.cols = cols;
+    this.tileSize = sprites.getTileSize();
+    this.sprites = sprites;
+    this.doorMasks = doorMasks;
+    this.chunkCols = (cols + CHUNK_TILES - 1) / CHUNK_TILES;
+    int chunkRows = (rows + CHUNK_TILES - 1) / CHUNK_TILES;
+    // kept in the order they were last drawn, so the eldest one is the least recently drawn
+    this.chunks = new LinkedHashMap<Integer, BufferedImage>(2 * MAX_CHUNKS, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+        return size() > MAX_CHUNKS;
+      }
+    };
+    this.revealed = new BitSet(rows * cols);
+    this.revealedChunks = new BitSet(chunkRows * chunkCols);
+
+    this.fog = SpriteCache.createImage(CHUNK_TILES * tileSize, CHUNK_TILES * tileSize,
+        Transparency.OPAQUE);
+    Graphics2D g2d = fog.createGraphics();
+    for (int i = 0; i < CHUNK_TILES; i++) {
+      for (int j = 0; j < CHUNK_TILES; j++) {
+        drawTile(g2d, sprites.getBlank(), i, j);
+      }
+    }
+    g2d.dispose();
+  }
+
+  /**
+   * Reveals the cell at the given position, drawing its tunnels. Revealing a cell again does
+   * nothing.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   */
+  void reveal(int row, int col) {
+    int cell = row * cols + col;
+    if (revealed.get(cell)) {
+      return;
+    }
+    revealed.set(cell);
+
+    int chunk = (row / CHUNK_TILES) * chunkCols + col / CHUNK_TILES;
+    revealedChunks.set(chunk);
+    BufferedImage image = chunks.get(chunk);
+    if (image == null) {
+      // drawing the chunk draws every revealed cell of it, including this one
+      chunks.put(chunk, drawChunk(chunk));
+      return;
+    }
+
+    Graphics2D g2d = image.createGraphics();
+    drawTile(g2d, sprites.getCell(doorMasks.applyAsInt(cell)), row % CHUNK_TILES,
+        col % CHUNK_TILES);
+    g2d.dispose();
+  }
+
+  /**
+   * Checks whether the cell at the given position has been revealed.
+   *
+   * @param row row of the cell
+   * @param col column of the cell
+   * @return true if the cell has been revealed
+   */
+  boolean isRevealed(int row, int col) {
+    return revealed.get(row * cols + col);
+  }
+
+  /**
+   * Draws the chunks of the layer within the given area.
+   *
+   * @param g2d  graphics object
+   * @param clip area to draw, null for the whole dungeon
+   */
+  void paint(Graphics2D g2d, Rectangle clip) {
+    int chunkSize = CHUNK_TILES * tileSize;
+    int firstRow = 0;
+    int lastRow = (rows - 1) / CHUNK_TILES;
+    int firstCol = 0;
+    int lastCol = chunkCols - 1;
+    if (clip != null) {
+      firstRow = Math.max(firstRow, clip.y / chunkSize);
+      lastRow = Math.min(lastRow, (clip.y + clip.height - 1) / chunkSize);
+      firstCol = Math.max(firstCol, clip.x / chunkSize);
+      lastCol = Math.min(lastCol, (clip.x + clip.width - 1) / chunkSize);
+    }
+
+    // chunks at the edges of the dungeon are only partly within it
+    Rectangle oldClip = g2d.getClipBounds();
+    g2d.clipRect(0, 0, cols * tileSize, rows * tileSize);
+    for (int i = firstRow; i <= lastRow; i++) {
+      for (int j = firstCol; j <= lastCol; j++) {
+        g2d.drawImage(getChunk(i * chunkCols + j), j * chunkSize, i * chunkSize, null);
+      }
+    }
+    g2d.setClip(oldClip);
+  }
+
+  /**
+   * Gets the image of the given chunk, drawing it again if it was dropped.
+   *
+   * @param chunk index of the chunk, {@code chunkRow * chunkCols + chunkCol}
+   * @return image of the chunk, the shared fog if none of its cells is revealed
+   */
+  private BufferedImage getChunk(int chunk) {
+    if (!(revealedChunks.get(chunk))) {
+      return fog;
+    }
+
+    BufferedImage image = chunks.get(chunk);
+    if (image == null) {
+      image = drawChunk(chunk);
+      chunks.put(chunk, image);
+    }
+    return image;
+  }
+
+  /**
+   * Draws the image of the given chunk, with the tunnels of its revealed cells over the fog.
+   *
+   * @param chunk index of the chunk, {@code chunkRow * chunkCols + chunkCol}
+   * @return image of the chunk
+   */
+  private BufferedImage drawChunk(int chunk) {
+    BufferedImage image = SpriteCache.createImage(fog.getWidth(), fog.getHeight(),
+        Transparency.OPAQUE);
+    Graphics2D g2d = image.createGraphics();
+    g2d.drawImage(fog, 0, 0, null);
+
+    int firstRow = (chunk / chunkCols) * CHUNK_TILES;
+    int firstCol = (chunk % chunkCols) * CHUNK_TILES;
+    for (int i = firstRow; i < Math.min(firstRow + CHUNK_TILES, rows); i++) {
+      for (int j = firstCol; j < Math.min(firstCol + CHUNK_TILES, cols); j++) {
+        int cell = i * cols + j;
+        if (revealed.get(cell)) {
+          drawTile(g2d, sprites.getCell(doorMasks.applyAsInt(cell)), i - firstRow, j - firstCol);
+        }
+      }
+    }
+    g2d.dispose();
+    return image;
+  }
+
+  /**
+   * Draws a tile with a black border at the given position within a chunk.
+   *
+   * @param g2d   graphics object of the chunk
+   * @param image image of the tile
+   * @param row   row of the tile within the chunk
+   * @param col   column of the tile within the chunk
+   */
+  private void drawTile(Graphics2D g2d, java.awt.Image image, int row, int col) {
+    int x = col * tileSize;
+    int y = row * tileSize;
+    g2d.drawImage(image, x, y, null);
+    g2d.setColor(Color.BLACK);
+    g2d.drawRect(x, y, tileSize - 1, tileSize - 1);
+  }
+}
@@ -0,0 +1,100 @@
+package dungeon.kruskal;
+
+/**
+ * This class implements a disjoint-set (union-find) structure over the cells of a dungeon. Each
+ * cell is identified by its index {@code row * cols + col}. The sets are stored in primitive arrays
+ * and use path compression and union by rank, so every operation runs in near constant time.
+ */
+public class DisjointSet {
+
+  private final int[] parent;
+  private final byte[] rank;
+  private int count;
+
+  /**
+   * Initializes the disjoint set with each of the given number of vertices in its own set.
+   *
+   * @param size number of vertices
+   * @throws IllegalArgumentException if the size is negative
+   */
+  public DisjointSet(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("Size cannot be negative");
+    }
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    this.count = size;
+    for (int i = 0; i < size; i++) {
+      parent[i] = i;
+    }
+  }
+
+  /**
+   * Finds the representative of the set the given vertex belongs to.
+   *
+   * @param vertex index of the vertex
+   * @return index of the representative vertex of the set
+   */
+  public int find(int vertex) {
+    int root = vertex;
+    while (parent[root] != root) {
+      root = parent[root];
+    }
+
+    // path compression
+    while (parent[vertex] != root) {
+      int next = parent[vertex];
+      parent[vertex] = root;
+      vertex = next;
+    }
+    return root;
+  }
+
+  /**
+   * Merges the sets of the two given vertices.
+   *
+   * @param first  index of the first vertex
+   * @param second index of the second vertex
+   * @return true if the vertices were in different sets, false if they were already connected
+   */
+  public boolean union(int first, int second) {
+    int firstRoot = find(first);
+    int secondRoot = find(second);
+
+    if (firstRoot == secondRoot) {
+      return false;
+    }
+
+    // union by rank
+    if (rank[firstRoot] < rank[secondRoot]) {
+      parent[firstRoot] = secondRoot;
+    } else if (rank[firstRoot] > rank[secondRoot]) {
+      parent[secondRoot] = firstRoot;
+    } else {
+      parent[secondRoot] = firstRoot;
+      rank[firstRoot] += 1;
+    }
+    count -= 1;
+    return true;
+  }
+
+  /**
+   * Checks whether the two given vertices are in the same set.
+   *
+   * @param first  index of the first vertex
+   * @param second index of the second vertex
+   * @return true if both vertices are in the same set else false
+   */
+  public boolean connected(int first, int second) {
+    return find(first) == find(second);
+  }
+
+  /**
+   * Gets the number of disjoint sets.
+   *
+   * @return number of disjoint sets
+   */
+  public int getCount() {
+    return this.count;
+  }
+}
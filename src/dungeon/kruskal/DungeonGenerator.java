@@ -0,0 +1,26 @@
+package dungeon.kruskal;
+
+import java.util.SplittableRandom;
+
+/**
+ * This interface represents a generator of dungeon layouts which streams each accepted edge to an
+ * {@link EdgeSink} instead of building up intermediate collections.
+ */
+public interface DungeonGenerator {
+
+  /**
+   * Generates the edges of a connected dungeon and pushes each of them exactly once to the given
+   * sink. Wrapping edges are only generated for wrapping dungeons, which also receive the given
+   * number of extra edges on top of the spanning tree. All randomness is drawn from the given
+   * random source, so the same seed always produces the same edges in the same order.
+   *
+   * @param rows              number of rows in dungeon
+   * @param cols              number of columns in dungeon
+   * @param nonWrapping       whether the dungeon is non-wrapping or not
+   * @param interconnectivity degree of interconnectivity of the dungeon
+   * @param random            source of randomness for the generation
+   * @param sink              consumer of the generated edges
+   */
+  void generate(int rows, int cols, boolean nonWrapping, int interconnectivity,
+      SplittableRandom random, EdgeSink sink);
+}
@@ -0,0 +1,113 @@
+package dungeon.kruskal;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class keeps a uniform random sample of a fixed number of packed edges out of a stream of
+ * edges of unknown length, using reservoir sampling. The memory used only depends on the size of
+ * the sample, not on the number of edges offered.
+ */
+class EdgeReservoir {
+
+  private final int[] sample;
+  private int size;
+  private long seen;
+
+  /**
+   * Initializes an empty reservoir holding up to the given number of edges.
+   *
+   * @param capacity size of the sample
+   */
+  EdgeReservoir(int capacity) {
+    this.sample = new int[capacity];
+    this.size = 0;
+    this.seen = 0;
+  }
+
+  /**
+   * Offers an edge to the reservoir. After n edges have been offered every one of them is in the
+   * sample with the same probability.
+   *
+   * @param edge   packed edge
+   * @param random source of randomness
+   */
+  void offer(int edge, SplittableRandom random) {
+    seen += 1;
+    if (size < sample.length) {
+      sample[size++] = edge;
+    } else if (sample.length > 0) {
+      long index = random.nextLong(seen);
+      if (index < sample.length) {
+        sample[(int) index] = edge;
+      }
+    }
+  }
+
+  /**
+   * Merges the sample of the other reservoir into this one, so that this reservoir holds a uniform
+   * sample of the edges offered to both of them. Each edge of the merged sample is drawn from one of
+   * the reservoirs with a probability proportional to the number of edges offered to it that
+   * haven't been drawn yet.
+   *
+   * @param other  reservoir to be merged into this one
+   * @param random source of randomness
+   */
+  void merge(EdgeReservoir other, SplittableRandom random) {
+    shuffle(random);
+    other.shuffle(random);
+
+    int[] merged = new int[sample.length];
+    int count = (int) Math.min(sample.length, seen + other.seen);
+    long remaining = seen;
+    long otherRemaining = other.seen;
+    int taken = 0;
+    int otherTaken = 0;
+
+    for (int k = 0; k < count; k++) {
+      if (random.nextLong(remaining + otherRemaining) < remaining) {
+        merged[k] = sample[taken++];
+        remaining -= 1;
+      } else {
+        merged[k] = other.sample[otherTaken++];
+        otherRemaining -= 1;
+      }
+    }
+
+    System.arraycopy(merged, 0, sample, 0, count);
+    size = count;
+    seen += other.seen;
+  }
+
+  /**
+   * Gets the number of edges in the sample.
+   *
+   * @return number of edges in the sample
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Gets the edge at the given index of the sample.
+   *
+   * @param index index in the sample
+   * @return packed edge
+   */
+  int get(int index) {
+    return sample[index];
+  }
+
+  /**
+   * Shuffles the sample, since the order of a reservoir is not random.
+   *
+   * @param random source of randomness
+   */
+  private void shuffle(SplittableRandom random) {
+    for (int i = size - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int edge = sample[i];
+      sample[i] = sample[j];
+      sample[j] = edge;
+    }
+  }
+}
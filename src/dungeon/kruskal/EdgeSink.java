@@ -0,0 +1,19 @@
+package dungeon.kruskal;
+
+import dungeon.player.Move;
+
+/**
+ * This interface represents a consumer of the edges accepted by a dungeon generator. Each edge is
+ * pushed as the index of its source cell, {@code row * cols + col}, and the direction of the tunnel
+ * from the source cell to its neighbour, wrapping around the edges of the grid.
+ */
+public interface EdgeSink {
+
+  /**
+   * Accepts an edge of the dungeon.
+   *
+   * @param cell      index of the source cell of the edge
+   * @param direction direction of the tunnel from the source cell to the destination cell
+   */
+  void accept(int cell, Move direction);
+}
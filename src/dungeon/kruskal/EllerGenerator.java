@@ -0,0 +1,227 @@
+package dungeon.kruskal;
+
+import dungeon.player.Move;
+import java.util.SplittableRandom;
+
+/**
+ * This class implements Eller's algorithm for generating a dungeon one row at a time. Only the
+ * sets of the current row are remembered, so the working state is proportional to the number of
+ * columns no matter how many rows the dungeon has. Every row is handed to a {@link RowSink} as soon
+ * as it is finished.
+ *
+ * <p>For wrapping dungeons the last column is joined to the first one like any other pair of
+ * neighbours. The extra edges for interconnectivity are a uniform sample of the edges left out of
+ * the spanning tree, taken as they stream past: the tunnels wrapping from the last row to the first
+ * one, which are chosen before the first row is emitted, and then the doors each row leaves closed.
+ * Since the number of leftover edges is known upfront, exactly as many extra edges are added as the
+ * interconnectivity asks for, or every leftover edge if there are fewer.
+ */
+public class EllerGenerator implements DungeonGenerator {
+
+  @Override
+  public void generate(int rows, int cols, boolean nonWrapping, int interconnectivity,
+      SplittableRandom random, EdgeSink sink) {
+    if (sink == null) {
+      throw new IllegalArgumentException("Sink cannot be null");
+    }
+
+    generateRows(rows, cols, nonWrapping, interconnectivity, random, (row, doors) -> {
+      for (int j = 0; j < cols; j++) {
+        if ((doors[j] & Move.EAST.getMask()) != 0) {
+          sink.accept(row * cols + j, Move.EAST);
+        }
+        if ((doors[j] & Move.SOUTH.getMask()) != 0) {
+          sink.accept(row * cols + j, Move.SOUTH);
+        }
+      }
+    });
+  }
+
+  /**
+   * Generates a connected dungeon row by row and hands every finished row to the given sink, from
+   * the first row to the last one. Wrapping doors are only opened for wrapping dungeons along a
+   * dimension greater than 2, which also receive the given number of extra edges on top of the
+   * spanning tree, or every edge left out of it if there are fewer.
+   *
+   * @param rows              number of rows in dungeon
+   * @param cols              number of columns in dungeon
+   * @param nonWrapping       whether the dungeon is non-wrapping or not
+   * @param interconnectivity degree of interconnectivity of the dungeon
+   * @param random            source of randomness for the generation
+   * @param sink              consumer of the generated rows
+   * @throws IllegalArgumentException if the dimensions are not positive, the interconnectivity is
+   *                                  negative or the random source or sink is null
+   */
+  public void generateRows(int rows, int cols, boolean nonWrapping, int interconnectivity,
+      SplittableRandom random, RowSink sink) {
+    if (rows <= 0 || cols <= 0) {
+      throw new IllegalArgumentException("Rows and columns must be > 0");
+    }
+
+    if (interconnectivity < 0) {
+      throw new IllegalArgumentException("Interconnectivity cannot be negative");
+    }
+
+    if (random == null || sink == null) {
+      throw new IllegalArgumentException("Random and sink cannot be null");
+    }
+
+    boolean wrapRows = !(nonWrapping) && rows > 2;
+    boolean wrapCols = !(nonWrapping) && cols > 2;
+    // extra edges still to be added, and leftover edges still to be offered for them
+    long[] extraEdges = {nonWrapping ? 0 : Math.min(interconnectivity,
+        KruskalImpl.leftoverEdgeCount(rows, cols, nonWrapping)),
+        KruskalImpl.leftoverEdgeCount(rows, cols, nonWrapping)};
+
+    // labels of the sets carried down from the previous row, -1 for a cell without a north door
+    int[] labels = new int[cols];
+    // union find over the labels of the current row, fresh cells get labels from cols onwards
+    int[] parent = new int[2 * cols];
+    int[] remap = new int[2 * cols];
+    int[] seen = new int[2 * cols];
+    int[] pick = new int[2 * cols];
+    boolean[] goesDown = new boolean[2 * cols];
+    byte[] doors = new byte[cols];
+    byte[] nextDoors = new byte[cols];
+    byte[] wrapDoors = new byte[cols];
+
+    for (int j = 0; j < cols; j++) {
+      labels[j] = -1;
+    }
+
+    // the tunnels wrapping from the last row to the first one have to be known upfront
+    if (wrapRows) {
+      for (int j = 0; j < cols; j++) {
+        if (offerExtra(extraEdges, random)) {
+          wrapDoors[j] = 1;
+          nextDoors[j] = (byte) Move.NORTH.getMask();
+        }
+      }
+    }
+
+    for (int i = 0; i < rows; i++) {
+      boolean lastRow = i == rows - 1;
+      byte[] temp = doors;
+      doors = nextDoors;
+      nextDoors = temp;
+
+      for (int l = 0; l < 2 * cols; l++) {
+        parent[l] = l;
+      }
+      for (int j = 0; j < cols; j++) {
+        nextDoors[j] = 0;
+        if (labels[j] < 0) {
+          labels[j] = cols + j;
+        }
+      }
+
+      // join neighbours of the row, offering the ones left apart as extra edges
+      int lastCol = wrapCols ? cols : cols - 1;
+      for (int j = 0; j < lastCol; j++) {
+        int next = (j + 1) % cols;
+        int first = find(parent, labels[j]);
+        int second = find(parent, labels[next]);
+
+        if (first != second && (lastRow || random.nextBoolean())) {
+          parent[first] = second;
+          doors[j] |= Move.EAST.getMask();
+          doors[next] |= Move.WEST.getMask();
+        } else if (offerExtra(extraEdges, random)) {
+          doors[j] |= Move.EAST.getMask();
+          doors[next] |= Move.WEST.getMask();
+        }
+      }
+
+      if (lastRow) {
+        for (int j = 0; j < cols; j++) {
+          doors[j] |= (byte) (wrapDoors[j] * Move.SOUTH.getMask());
+        }
+        sink.acceptRow(i, doors);
+        break;
+      }
+
+      // every set must reach the next row through at least one south door
+      for (int l = 0; l < 2 * cols; l++) {
+        seen[l] = 0;
+        goesDown[l] = false;
+        remap[l] = -1;
+      }
+      for (int j = 0; j < cols; j++) {
+        int root = find(parent, labels[j]);
+        seen[root] += 1;
+        if (random.nextInt(seen[root]) == 0) {
+          pick[root] = j;
+        }
+        if (random.nextBoolean()) {
+          doors[j] |= Move.SOUTH.getMask();
+          goesDown[root] = true;
+        }
+      }
+
+      int setCount = 0;
+      for (int j = 0; j < cols; j++) {
+        int root = find(parent, labels[j]);
+        if (!(goesDown[root]) && pick[root] == j) {
+          doors[j] |= Move.SOUTH.getMask();
+        }
+
+        if ((doors[j] & Move.SOUTH.getMask()) != 0) {
+          // relabel the sets carried down to the range [0, cols)
+          if (remap[root] < 0) {
+            remap[root] = setCount++;
+          }
+          labels[j] = remap[root];
+          nextDoors[j] |= Move.NORTH.getMask();
+        } else {
+          // an extra door leads to a cell which starts a set of its own, like a closed one
+          labels[j] = -1;
+          if (offerExtra(extraEdges, random)) {
+            doors[j] |= Move.SOUTH.getMask();
+            nextDoors[j] |= Move.NORTH.getMask();
+          }
+        }
+      }
+
+      sink.acceptRow(i, doors);
+    }
+  }
+
+  /**
+   * Offers a leftover edge as an extra edge. Each leftover edge is taken with a probability of the
+   * number of extra edges still to be added over the number of leftover edges still to be offered,
+   * so that exactly the requested number is taken once every leftover edge has been offered, each
+   * edge with the same probability.
+   *
+   * @param extraEdges extra edges still to be added and leftover edges still to be offered, updated
+   *                   in place
+   * @param random     source of randomness for the generation
+   * @return true if the edge is taken as an extra edge
+   */
+  private boolean offerExtra(long[] extraEdges, SplittableRandom random) {
+    if (extraEdges[0] == 0) {
+      return false;
+    }
+
+    boolean taken = random.nextLong(extraEdges[1]) < extraEdges[0];
+    extraEdges[1] -= 1;
+    if (taken) {
+      extraEdges[0] -= 1;
+    }
+    return taken;
+  }
+
+  /**
+   * Finds the representative label of the given label, compressing the path on the way.
+   *
+   * @param parent parent of each label
+   * @param label  given label
+   * @return representative label
+   */
+  private int find(int[] parent, int label) {
+    while (parent[label] != label) {
+      parent[label] = parent[parent[label]];
+      label = parent[label];
+    }
+    return label;
+  }
+}
@@ -7,7 +7,7 @@ import java.util.Map;
 /**
  * This interface represents the functionalities of Kruskal algorithm.
  */
-public interface Kruskal {
+public interface Kruskal extends DungeonGenerator {
 
   /**
    * Generates a list of positions of locations present in dungeon.
@@ -46,4 +46,17 @@ public interface Kruskal {
       boolean nonWrapping,
       int interconnectivity);
 
+  /**
+   * Applies kruskals algorithm on the vertex indices of the dungeon, where the index of the vertex
+   * at (row, col) is {@code row * cols + col}, and returns the edges of the minimum spanning tree
+   * along with the extra edges added for interconnectivity.
+   *
+   * @param rows              number of rows in dungeon
+   * @param cols              number of columns in dungeon
+   * @param nonWrapping       whether the dungeon is non-wrapping or not
+   * @param interconnectivity degree of interconnectivity of the dungeon
+   * @return flat array of source and destination vertex indices, two entries per edge
+   */
+  int[] getMSTEdges(int rows, int cols, boolean nonWrapping, int interconnectivity);
+
 }
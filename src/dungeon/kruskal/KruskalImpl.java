@@ -1,14 +1,13 @@
 package dungeon.kruskal;
 
+import dungeon.player.Move;
 import dungeon.position.Position;
 import dungeon.position.PositionImpl;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.SplittableRandom;
 
 /**
  * This class implements the Kruskal's algorithm for finding a minimum spanning tree for the
@@ -16,15 +15,80 @@ import java.util.Set;
  */
 public class KruskalImpl implements Kruskal {
 
+  private final SplittableRandom random;
+
+  /**
+   * Initializes the random source used to order the potential edges with a random seed.
+   */
+  public KruskalImpl() {
+    this(new SplittableRandom());
+  }
+
+  /**
+   * Initializes the random source used to order the potential edges when generating the minimum
+   * spanning tree through {@link #getMST} or {@link #getMSTEdges}.
+   *
+   * @param random source of randomness for the generation
+   */
+  public KruskalImpl(SplittableRandom random) {
+    if (random == null) {
+      throw new IllegalArgumentException("Random cannot be null");
+    }
+    this.random = random;
+  }
+
   @Override
   public Map<Position, List<Position>> getMST(int rows, int cols,
       boolean nonWrapping,
       int interconnectivity) {
     List<Position> vertices = generateVertices(rows, cols);
-    Map<Position, List<Position>> potentialEdges = generatePotentialEdges(vertices, rows,
-        cols,
-        nonWrapping);
-    return kruskal(vertices, potentialEdges, interconnectivity, nonWrapping);
+    int[] edges = getMSTEdges(rows, cols, nonWrapping, interconnectivity);
+    Map<Position, List<Position>> minimumSpanEdges = new HashMap<>();
+
+    for (int i = 0; i < edges.length; i += 2) {
+      Position src = vertices.get(edges[i]);
+      if (!(minimumSpanEdges.containsKey(src))) {
+        minimumSpanEdges.put(src, new ArrayList<>());
+      }
+      minimumSpanEdges.get(src).add(vertices.get(edges[i + 1]));
+    }
+    return minimumSpanEdges;
+  }
+
+  @Override
+  public int[] getMSTEdges(int rows, int cols, boolean nonWrapping, int interconnectivity) {
+    int extraEdges = nonWrapping ? 0 : Math.min(interconnectivity,
+        leftoverEdgeCount(rows, cols, nonWrapping));
+    int[] edges = new int[2 * (Math.max(rows * cols - 1, 0) + Math.max(extraEdges, 0))];
+    int[] count = new int[1];
+
+    generate(rows, cols, nonWrapping, interconnectivity, random, (cell, direction) -> {
+      edges[count[0]++] = cell;
+      edges[count[0]++] = direction.step(cell, rows, cols);
+    });
+
+    if (count[0] == edges.length) {
+      return edges;
+    }
+    int[] trimmed = new int[count[0]];
+    System.arraycopy(edges, 0, trimmed, 0, count[0]);
+    return trimmed;
+  }
+
+  @Override
+  public void generate(int rows, int cols, boolean nonWrapping, int interconnectivity,
+      SplittableRandom random, EdgeSink sink) {
+    int[] potentialEdges = generatePotentialEdges(rows, cols, nonWrapping);
+
+    // shuffle the potential edges, which acts as assigning them random weights
+    for (int i = potentialEdges.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int edge = potentialEdges[i];
+      potentialEdges[i] = potentialEdges[j];
+      potentialEdges[j] = edge;
+    }
+
+    kruskal(potentialEdges, rows, cols, interconnectivity, nonWrapping, random, sink);
   }
 
   @Override
@@ -116,88 +180,105 @@ public class KruskalImpl implements Kruskal {
   }
 
   /**
-   * Implements the kruskal algorithm for finding the minimum spanning tree from location grid.
+   * Counts the potential edges of a dungeon, see {@link #generatePotentialEdges(int, int,
+   * boolean)}.
    *
-   * @param vertices          list of positions of locations present in dungeon.
-   * @param potentialEdges    potential edges which consist of mapping of a source vertex to its
-   *                          connected destination vertices
-   * @param interconnectivity degree of interconnectivity of dungeon
-   * @param nonWrapping       whether the dungeon is non-wrapping or not
-   * @return list of potential edges obtained from the minimum spanning tree
+   * @param rows        number of rows in dungeon
+   * @param cols        number of columns in dungeon
+   * @param nonWrapping whether the dungeon is non-wrapping or not
+   * @return number of potential edges
    */
-  private Map<Position, List<Position>> kruskal(List<Position> vertices,
-      Map<Position, List<Position>> potentialEdges, int interconnectivity,
-      boolean nonWrapping) {
-    List<Set<Position>> locationSet = new ArrayList<>(); // location set
-    Map<Position, List<Position>> minimumSpanEdges = new HashMap<>(); // new edges
-    Map<Position, List<Position>> leftoverEdges = new HashMap<>(); // leftover edges
-
-    // store each vertex in a separate list
-    for (Position position : vertices) {
-      Set<Position> location = new HashSet<>();
-      location.add(position);
-      locationSet.add(location);
+  static int potentialEdgeCount(int rows, int cols, boolean nonWrapping) {
+    int edgeCount = rows * (cols - 1) + (rows - 1) * cols;
+    if (!(nonWrapping) && rows > 2) {
+      edgeCount += cols;
     }
+    if (!(nonWrapping) && cols > 2) {
+      edgeCount += rows;
+    }
+    return edgeCount;
+  }
 
-    for (Map.Entry<Position, List<Position>> set : potentialEdges.entrySet()) {
-      Position src = set.getKey();
-
-      for (Position dest : set.getValue()) {
-        int srcIndex = getVertexLocation(locationSet, src);
-        int destIndex = getVertexLocation(locationSet, dest);
+  /**
+   * Counts the potential edges of a dungeon left over once it is spanned by a tree, which bounds
+   * the number of extra edges the interconnectivity can add.
+   *
+   * @param rows        number of rows in dungeon
+   * @param cols        number of columns in dungeon
+   * @param nonWrapping whether the dungeon is non-wrapping or not
+   * @return number of leftover edges
+   */
+  static int leftoverEdgeCount(int rows, int cols, boolean nonWrapping) {
+    return Math.max(potentialEdgeCount(rows, cols, nonWrapping) - (rows * cols - 1), 0);
+  }
 
-        if (srcIndex == destIndex) {
-          if (!(leftoverEdges.containsKey(src))) {
-            leftoverEdges.put(src, new ArrayList<>());
-          }
-          leftoverEdges.get(src).add(dest);
-        } else {
-          if (!(minimumSpanEdges.containsKey(src))) {
-            minimumSpanEdges.put(src, new ArrayList<>());
-          }
-          minimumSpanEdges.get(src).add(dest); //add to new edges
-          locationSet.get(srcIndex).addAll(locationSet.get(destIndex)); //union
-          locationSet.remove(destIndex);
+  /**
+   * Generates the potential edges of the dungeon packed into single ints. An edge is stored as
+   * {@code cell << 1 | 1} if it leads south from the cell and {@code cell << 1} if it leads east,
+   * where the index of the cell at (row, col) is {@code row * cols + col}. Wrapping edges lead from
+   * the last row (column) to the first one and are only generated along a dimension greater than 2,
+   * since a smaller dimension would connect a vertex to itself or repeat an existing edge.
+   *
+   * @param rows        number of rows in dungeon
+   * @param cols        number of columns in dungeon
+   * @param nonWrapping whether the dungeon is non-wrapping or not
+   * @return packed potential edges
+   */
+  private int[] generatePotentialEdges(int rows, int cols, boolean nonWrapping) {
+    boolean wrapRows = !(nonWrapping) && rows > 2;
+    boolean wrapCols = !(nonWrapping) && cols > 2;
+    int[] potentialEdges = new int[potentialEdgeCount(rows, cols, nonWrapping)];
+    int n = 0;
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        int cell = cols * i + j;
+        if (j != cols - 1 || wrapCols) {
+          potentialEdges[n++] = cell << 1;
         }
-      }
-    }
-    // adding left over edges to the minimum span edges if interconnectivity > 0
-    if (!(nonWrapping)) {
-      int count = 0;
-      for (Map.Entry<Position, List<Position>> set : leftoverEdges.entrySet()) {
-        Position src = set.getKey();
-        for (Position dest : set.getValue()) {
-          if (count == interconnectivity) {
-            return minimumSpanEdges;
-          }
-          if (!(minimumSpanEdges.containsKey(src))) {
-            minimumSpanEdges.put(src, new ArrayList<>());
-          }
-          minimumSpanEdges.get(src).add(dest);
-          count += 1;
+        if (i != rows - 1 || wrapRows) {
+          potentialEdges[n++] = cell << 1 | 1;
         }
       }
     }
-    return minimumSpanEdges;
+    return potentialEdges;
   }
 
   /**
-   * Gets the set index of the given vertex from a list of location sets.
+   * Implements the kruskal algorithm for finding the minimum spanning tree from location grid. The
+   * connected components are tracked in a disjoint set of cell indices and every accepted edge is
+   * pushed to the sink as soon as it is found. The extra edges for interconnectivity are a uniform
+   * sample of the leftover edges.
    *
-   * @param locationSet list of location sets
-   * @param vertex      given vertex whose set index is to be found
-   * @return set index of the given vertex
+   * @param potentialEdges    packed potential edges in the order they are to be considered
+   * @param rows              number of rows in dungeon
+   * @param cols              number of columns in dungeon
+   * @param interconnectivity degree of interconnectivity of dungeon
+   * @param nonWrapping       whether the dungeon is non-wrapping or not
+   * @param random            source of randomness for sampling the leftover edges
+   * @param sink              consumer of the accepted edges
    */
-  private int getVertexLocation(List<Set<Position>> locationSet, Position vertex) {
-    for (int i = 0; i < locationSet.size(); i++) {
-      if (locationSet.get(i).contains(vertex)) {
-        return i;
+  private void kruskal(int[] potentialEdges, int rows, int cols, int interconnectivity,
+      boolean nonWrapping, SplittableRandom random, EdgeSink sink) {
+    DisjointSet locationSet = new DisjointSet(rows * cols); // location set
+    EdgeReservoir leftoverEdges = new EdgeReservoir(nonWrapping ? 0 : Math.min(interconnectivity,
+        leftoverEdgeCount(rows, cols, nonWrapping)));
+
+    for (int edge : potentialEdges) {
+      int src = edge >>> 1;
+      Move direction = (edge & 1) == 0 ? Move.EAST : Move.SOUTH;
+
+      if (locationSet.union(src, direction.step(src, rows, cols))) {
+        sink.accept(src, direction);
+      } else {
+        leftoverEdges.offer(edge, random);
       }
     }
-    throw new NoSuchElementException("Vertex: " + vertex.getX() + "," + vertex.getY() + " "
-        + "doesn't exist");
+
+    // adding left over edges to the minimum span edges if interconnectivity > 0
+    for (int i = 0; i < leftoverEdges.size(); i++) {
+      int edge = leftoverEdges.get(i);
+      sink.accept(edge >>> 1, (edge & 1) == 0 ? Move.EAST : Move.SOUTH);
+    }
   }
 
 }
-
-
@@ -0,0 +1,18 @@
+package dungeon.kruskal;
+
+/**
+ * This interface represents a consumer of the rows of a dungeon generated one row at a time. Each
+ * row is handed over as a bitmask of open doors per column, where a door in the direction of a
+ * move is set through {@link dungeon.player.Move#getMask()}.
+ */
+public interface RowSink {
+
+  /**
+   * Accepts a finished row of the dungeon. The doors of a row never change once it is accepted.
+   * The given array is reused for the next row, so it must be copied if it is to be kept.
+   *
+   * @param row   index of the row
+   * @param doors bitmask of open doors for each column of the row
+   */
+  void acceptRow(int row, byte[] doors);
+}
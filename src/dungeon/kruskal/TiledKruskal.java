@@ -0,0 +1,292 @@
+package dungeon.kruskal;
+
+import dungeon.player.Move;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class generates a dungeon in parallel by splitting the grid into rectangular tiles. A
+ * spanning tree is built for every tile with kruskal's algorithm on a {@link ForkJoinPool}. The
+ * tiles are then stitched into a single connected dungeon by running kruskal's algorithm once more
+ * over the tiles and the edges along their borders. Wrapping edges always cross a border, so they
+ * are handled while stitching.
+ *
+ * <p>The generated edges only depend on the given random source and the tile size, not on the
+ * number of threads. The edges are pushed to the sink from the calling thread.
+ */
+public class TiledKruskal implements DungeonGenerator {
+
+  private final int tileRows;
+  private final int tileCols;
+  private final ForkJoinPool pool;
+
+  /**
+   * Initializes the generator with tiles of 128x128 cells running on the common pool.
+   */
+  public TiledKruskal() {
+    this(128, 128, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Initializes the size of the tiles and the pool the tiles are generated on.
+   *
+   * @param tileRows number of rows in a tile
+   * @param tileCols number of columns in a tile
+   * @param pool     pool the tiles are generated on
+   * @throws IllegalArgumentException if the tile size is not positive or the pool is null
+   */
+  public TiledKruskal(int tileRows, int tileCols, ForkJoinPool pool) {
+    if (tileRows <= 0 || tileCols <= 0) {
+      throw new IllegalArgumentException("Tile size must be > 0");
+    }
+
+    if (pool == null) {
+      throw new IllegalArgumentException("Pool cannot be null");
+    }
+
+    this.tileRows = tileRows;
+    this.tileCols = tileCols;
+    this.pool = pool;
+  }
+
+  @Override
+  public void generate(int rows, int cols, boolean nonWrapping, int interconnectivity,
+      SplittableRandom random, EdgeSink sink) {
+    if (rows <= 0 || cols <= 0) {
+      throw new IllegalArgumentException("Rows and columns must be > 0");
+    }
+
+    if (interconnectivity < 0) {
+      throw new IllegalArgumentException("Interconnectivity cannot be negative");
+    }
+
+    if (random == null || sink == null) {
+      throw new IllegalArgumentException("Random and sink cannot be null");
+    }
+
+    int extraEdges = nonWrapping ? 0 : Math.min(interconnectivity,
+        KruskalImpl.leftoverEdgeCount(rows, cols, nonWrapping));
+    int tilesDown = (rows + tileRows - 1) / tileRows;
+    int tilesAcross = (cols + tileCols - 1) / tileCols;
+    Tile[] tiles = new Tile[tilesDown * tilesAcross];
+
+    // the random sources are split upfront so that the result doesn't depend on scheduling
+    for (int t = 0; t < tiles.length; t++) {
+      int firstRow = (t / tilesAcross) * tileRows;
+      int firstCol = (t % tilesAcross) * tileCols;
+      tiles[t] = new Tile(firstRow, firstCol, Math.min(tileRows, rows - firstRow),
+          Math.min(tileCols, cols - firstCol), extraEdges, random.split());
+    }
+
+    pool.invoke(new TileTask(tiles, 0, tiles.length, cols));
+
+    // stitch the tiles together over their borders
+    int[] borderEdges = generateBorderEdges(rows, cols, nonWrapping);
+    shuffle(borderEdges, borderEdges.length, random);
+
+    DisjointSet tileSet = new DisjointSet(tiles.length);
+    EdgeReservoir leftoverEdges = new EdgeReservoir(extraEdges);
+
+    for (Tile tile : tiles) {
+      for (int i = 0; i < tile.edgeCount; i++) {
+        int edge = tile.edges[i];
+        sink.accept(edge >>> 1, direction(edge));
+      }
+    }
+
+    for (int edge : borderEdges) {
+      int src = edge >>> 1;
+      int dest = direction(edge).step(src, rows, cols);
+      if (tileSet.union(tileOf(src, cols, tilesAcross), tileOf(dest, cols, tilesAcross))) {
+        sink.accept(src, direction(edge));
+      } else {
+        leftoverEdges.offer(edge, random);
+      }
+    }
+
+    // add the extra edges, a uniform sample of the leftovers of the border and all the tiles
+    for (Tile tile : tiles) {
+      leftoverEdges.merge(tile.leftovers, random);
+    }
+
+    for (int i = 0; i < leftoverEdges.size(); i++) {
+      int edge = leftoverEdges.get(i);
+      sink.accept(edge >>> 1, direction(edge));
+    }
+  }
+
+  /**
+   * Generates the packed edges which cross from one tile to another, including the wrapping edges.
+   * An edge is stored as {@code cell << 1 | 1} if it leads south and as {@code cell << 1} if it
+   * leads east.
+   *
+   * @param rows        number of rows in dungeon
+   * @param cols        number of columns in dungeon
+   * @param nonWrapping whether the dungeon is non-wrapping or not
+   * @return packed border edges
+   */
+  private int[] generateBorderEdges(int rows, int cols, boolean nonWrapping) {
+    boolean wrapRows = !(nonWrapping) && rows > 2;
+    boolean wrapCols = !(nonWrapping) && cols > 2;
+    int eastBorders = (cols - 1) / tileCols + (wrapCols ? 1 : 0);
+    int southBorders = (rows - 1) / tileRows + (wrapRows ? 1 : 0);
+    int[] borderEdges = new int[eastBorders * rows + southBorders * cols];
+    int n = 0;
+
+    for (int i = 0; i < rows; i++) {
+      for (int j = tileCols - 1; j < cols - 1; j += tileCols) {
+        borderEdges[n++] = (i * cols + j) << 1;
+      }
+      if (wrapCols) {
+        borderEdges[n++] = (i * cols + cols - 1) << 1;
+      }
+    }
+
+    for (int i = tileRows - 1; i < rows - 1; i += tileRows) {
+      for (int j = 0; j < cols; j++) {
+        borderEdges[n++] = (i * cols + j) << 1 | 1;
+      }
+    }
+    if (wrapRows) {
+      for (int j = 0; j < cols; j++) {
+        borderEdges[n++] = ((rows - 1) * cols + j) << 1 | 1;
+      }
+    }
+    return borderEdges;
+  }
+
+  /**
+   * Gets the index of the tile the given cell belongs to.
+   *
+   * @param cell        index of the cell
+   * @param cols        number of columns in dungeon
+   * @param tilesAcross number of tiles in a row of tiles
+   * @return index of the tile
+   */
+  private int tileOf(int cell, int cols, int tilesAcross) {
+    return (cell / cols / tileRows) * tilesAcross + (cell % cols) / tileCols;
+  }
+
+  /**
+   * Gets the direction of the given packed edge.
+   *
+   * @param edge packed edge
+   * @return east or south
+   */
+  private static Move direction(int edge) {
+    return (edge & 1) == 0 ? Move.EAST : Move.SOUTH;
+  }
+
+  /**
+   * Shuffles the first given number of packed edges, which acts as assigning them random weights.
+   *
+   * @param edges  packed edges
+   * @param length number of edges to be shuffled
+   * @param random source of randomness
+   */
+  private static void shuffle(int[] edges, int length, SplittableRandom random) {
+    for (int i = length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int edge = edges[i];
+      edges[i] = edges[j];
+      edges[j] = edge;
+    }
+  }
+
+  /**
+   * This class represents a rectangular tile of the dungeon along with the spanning tree edges and
+   * a sample of the leftover edges found for it.
+   */
+  private static class Tile {
+
+    private final int firstRow;
+    private final int firstCol;
+    private final int height;
+    private final int width;
+    private final SplittableRandom random;
+    private final int[] edges;
+    private final EdgeReservoir leftovers;
+    private int edgeCount;
+
+    private Tile(int firstRow, int firstCol, int height, int width, int extraEdges,
+        SplittableRandom random) {
+      this.firstRow = firstRow;
+      this.firstCol = firstCol;
+      this.height = height;
+      this.width = width;
+      this.random = random;
+      this.edges = new int[height * width - 1];
+      this.leftovers = new EdgeReservoir(Math.min(extraEdges,
+          KruskalImpl.leftoverEdgeCount(height, width, true)));
+    }
+
+    /**
+     * Applies kruskal's algorithm on the edges inside the tile.
+     *
+     * @param cols number of columns in dungeon
+     */
+    private void build(int cols) {
+      int[] potentialEdges = new int[height * (width - 1) + (height - 1) * width];
+      int n = 0;
+      for (int i = 0; i < height; i++) {
+        for (int j = 0; j < width; j++) {
+          int cell = (firstRow + i) * cols + firstCol + j;
+          if (j != width - 1) {
+            potentialEdges[n++] = cell << 1;
+          }
+          if (i != height - 1) {
+            potentialEdges[n++] = cell << 1 | 1;
+          }
+        }
+      }
+      shuffle(potentialEdges, n, random);
+
+      DisjointSet locationSet = new DisjointSet(height * width);
+      for (int edge : potentialEdges) {
+        int cell = edge >>> 1;
+        int local = (cell / cols - firstRow) * width + cell % cols - firstCol;
+        int other = (edge & 1) == 0 ? local + 1 : local + width;
+
+        if (locationSet.union(local, other)) {
+          edges[edgeCount++] = edge;
+        } else {
+          leftovers.offer(edge, random);
+        }
+      }
+    }
+  }
+
+  /**
+   * This class builds the spanning trees of a range of tiles, splitting the range in half until a
+   * single tile is left.
+   */
+  private static class TileTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Tile[] tiles;
+    private final int from;
+    private final int to;
+    private final int cols;
+
+    private TileTask(Tile[] tiles, int from, int to, int cols) {
+      this.tiles = tiles;
+      this.from = from;
+      this.to = to;
+      this.cols = cols;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= 1) {
+        if (to > from) {
+          tiles[from].build(cols);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new TileTask(tiles, from, middle, cols), new TileTask(tiles, middle, to, cols));
+    }
+  }
+}
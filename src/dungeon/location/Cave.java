@@ -4,10 +4,9 @@ import dungeon.otyugh.Otyugh;
 import dungeon.player.Move;
 import dungeon.position.Position;
 import dungeon.treasure.Treasure;
+import dungeon.treasure.TreasureKind;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -18,11 +17,24 @@ import java.util.NoSuchElementException;
  */
 public class Cave implements Location {
 
+  // order in which a cave describes its treasure
+  private static final TreasureKind[] DESCRIPTION_ORDER = {TreasureKind.SAPPHIRE,
+      TreasureKind.DIAMOND, TreasureKind.RUBY};
+
   private final Position position;
-  private final List<Tunnel> tunnel;
+  // one corridor per door, indexed by the ordinal of the move leading through it
+  private final Corridor[] corridors;
+  // ordinals of the doors in the order they were added, two bits each
+  private int doorOrder;
+  private int doorCount;
+  private int doorMask;
   private Otyugh otyugh;
   private int arrows;
-  private final List<Treasure> treasure;
+  private final int[] treasure;
+  private int treasureCount;
+  private LocationListener listener;
+  private SmellField smellField;
+  private int cell;
 
   /**
    * Initializes the position, list of tunnels and list of treasures of a cave.
@@ -32,29 +44,112 @@ public class Cave implements Location {
    * @param treasure list of treasures to be added to the cave
    */
   public Cave(Position position, List<Tunnel> tunnel, List<Treasure> treasure) {
-    this.tunnel = tunnel;
+    this.corridors = new Corridor[Move.values().length];
     this.position = position;
-    this.treasure = treasure;
+    this.treasure = new int[TreasureKind.values().length];
+    this.treasureCount = 0;
     this.arrows = 0;
     this.otyugh = null;
+    for (Treasure item : treasure) {
+      addTreasure(item);
+    }
+    for (Tunnel item : tunnel) {
+      addTunnel(item);
+    }
+  }
+
+  /**
+   * Sets the listener told about every change to the treasure and arrows in the cave.
+   *
+   * @param listener listener of the cave, null for none
+   */
+  public void setListener(LocationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Sets the smell field the cave reads its smell from and reports its otyugh to.
+   *
+   * @param smellField smell field of the dungeon, null to work out the smell from the neighbors
+   * @param cell       index of the cave in the smell field
+   */
+  public void setSmellField(SmellField smellField, int cell) {
+    this.smellField = smellField;
+    this.cell = cell;
+    if (smellField != null && this.otyugh != null) {
+      smellField.addOtyugh(cell);
+    }
   }
 
   @Override
   public void addTreasure(Treasure treasure) {
-    this.treasure.add(treasure);
+    TreasureKind kind = TreasureKind.of(treasure);
+    this.treasure[kind.ordinal()] += 1;
+    this.treasureCount += 1;
+    if (this.listener != null) {
+      this.listener.treasureChanged(this, kind, 1);
+    }
   }
 
   @Override
   public void addTunnel(Tunnel tunnel) {
-    this.tunnel.add(tunnel);
+    addCorridor(tunnel.getCorridor(), tunnel.getDirection());
+  }
+
+  /**
+   * Adds a door to the cave leading through the given corridor. The corridor is shared with the
+   * cave at its other end, so the arrows lying in it are seen from both caves.
+   *
+   * @param corridor corridor leading out of the cave
+   * @param move     direction of the corridor from this cave
+   */
+  public void addCorridor(Corridor corridor, Move move) {
+    if (this.corridors[move.ordinal()] == null) {
+      this.doorOrder |= move.ordinal() << (2 * this.doorCount);
+      this.doorCount += 1;
+      this.doorMask |= move.getMask();
+    }
+    this.corridors[move.ordinal()] = corridor;
+  }
+
+  @Override
+  public Location getNeighbor(Move move) {
+    Tunnel tunnel = getTunnel(move);
+    if (tunnel == null) {
+      return null;
+    }
+    return tunnel.getDestination();
+  }
+
+  @Override
+  public Tunnel getTunnel(Move move) {
+    Corridor corridor = this.corridors[move.ordinal()];
+    if (corridor == null) {
+      return null;
+    }
+    return corridor.towards(move);
+  }
+
+  /**
+   * Gets the direction of the door added to the cave at the given position.
+   *
+   * @param index position of the door, starting from 0 for the first door added
+   * @return direction of the door
+   */
+  private Move getDoor(int index) {
+    return Move.values()[(this.doorOrder >>> (2 * index)) & 3];
+  }
+
+  @Override
+  public int getDoorMask() {
+    return this.doorMask;
   }
 
   @Override
   public Location getNextLocation(Move move) {
-    for (Tunnel tunnel : tunnel) {
-      if (tunnel.getDirection().toString().equals(move.toString())) {
-        return tunnel.getDestination();
-      }
+    Location next = getNeighbor(move);
+    if (next != null) {
+      return next;
     }
     throw new IllegalArgumentException("Move: " + move.toString() + " not possible for Cave: (" +
         position.getX() + "," + position.getY() + ")");
@@ -62,10 +157,20 @@ public class Cave implements Location {
 
   @Override
   public List<Treasure> getTreasure() {
-    List<Treasure> treasureList = this.treasure;
+    List<Treasure> treasureList = new ArrayList<>(this.treasureCount);
+    for (TreasureKind kind : TreasureKind.values()) {
+      for (int i = 0; i < this.treasure[kind.ordinal()]; i++) {
+        treasureList.add(kind);
+      }
+    }
     return treasureList;
   }
 
+  @Override
+  public int getTreasureCount(TreasureKind kind) {
+    return this.treasure[kind.ordinal()];
+  }
+
   @Override
   public Position getPosition() {
     Position position = this.position;
@@ -74,46 +179,69 @@ public class Cave implements Location {
 
   @Override
   public List<Tunnel> getTunnel() {
-    List<Tunnel> tunnelList = this.tunnel;
+    List<Tunnel> tunnelList = new ArrayList<>(this.doorCount);
+    for (int i = 0; i < this.doorCount; i++) {
+      tunnelList.add(getTunnel(getDoor(i)));
+    }
     return tunnelList;
   }
 
   @Override
   public List<String> getPossibleMoves() {
-    List<String> moves = new ArrayList<>();
-    for (Tunnel tunnel : this.tunnel) {
-      moves.add(tunnel.getDirection().toString());
+    List<String> moves = new ArrayList<>(this.doorCount);
+    for (int i = 0; i < this.doorCount; i++) {
+      moves.add(getDoor(i).toString());
     }
     return moves;
   }
 
   @Override
   public List<Treasure> pickupTreasure() {
-    List<Treasure> treasures = new ArrayList<>(this.treasure);
-    this.treasure.clear();
+    List<Treasure> treasures = getTreasure();
+    for (TreasureKind kind : TreasureKind.values()) {
+      if (this.listener != null && this.treasure[kind.ordinal()] > 0) {
+        this.listener.treasureChanged(this, kind, -this.treasure[kind.ordinal()]);
+      }
+      this.treasure[kind.ordinal()] = 0;
+    }
+    this.treasureCount = 0;
     return treasures;
   }
 
   @Override
   public Treasure pickupTreasure(String treasure) {
-    if (this.treasure.isEmpty()) {
+    if (this.treasureCount == 0) {
       throw new IllegalArgumentException("No treasure available");
     }
 
-    for (Treasure treasureTemp : this.treasure) {
-      if (treasureTemp.toString().equals(treasure)) {
-        this.treasure.remove(treasureTemp);
-        return treasureTemp;
-      }
+    TreasureKind kind;
+    try {
+      kind = TreasureKind.of(treasure);
+    } catch (IllegalArgumentException illegalArgumentException) {
+      throw new IllegalArgumentException("Item not available");
     }
 
-    throw new IllegalArgumentException("Item not available");
+    if (this.treasure[kind.ordinal()] == 0) {
+      throw new IllegalArgumentException("Item not available");
+    }
+    this.treasure[kind.ordinal()] -= 1;
+    this.treasureCount -= 1;
+    if (this.listener != null) {
+      this.listener.treasureChanged(this, kind, -1);
+    }
+    return kind;
   }
 
   @Override
   public void addOtyugh(Otyugh otyugh) {
     if (this.otyugh == null) {
       this.otyugh = otyugh;
+      if (this.smellField != null && otyugh != null) {
+        this.smellField.addOtyugh(this.cell);
+      }
+      if (this.listener != null && otyugh != null) {
+        this.listener.otyughChanged(this);
+      }
     } else {
       throw new IllegalStateException("There's already an otyugh in this cave");
     }
@@ -132,6 +260,9 @@ public class Cave implements Location {
     }
     int temp = this.arrows;
     this.arrows = 0;
+    if (this.listener != null) {
+      this.listener.caveArrowsChanged(this, -temp);
+    }
     return temp;
   }
 
@@ -139,62 +270,32 @@ public class Cave implements Location {
   @Override
   public void addArrow() {
     this.arrows += 1;
+    if (this.listener != null) {
+      this.listener.caveArrowsChanged(this, 1);
+    }
   }
 
   @Override
   public String toString() {
+    if (this.smellField != null) {
+      return SmellField.describe(this.smellField.getIntensity(this.cell),
+          this.smellField.getRadius()) + describe();
+    }
+
     StringBuilder sb = new StringBuilder();
     int nearbyOtyughCount = 0;
     int farOtyughCount = 0;
 
-    List<String> currPossibleMoves = this.getPossibleMoves();
-    for (String currMove : currPossibleMoves) {
-      Location location;
-
-      switch (currMove) {
-        case "NORTH":
-          location = this.getNextLocation(Move.NORTH);
-          break;
-        case "SOUTH":
-          location = this.getNextLocation(Move.SOUTH);
-          break;
-        case "EAST":
-          location = this.getNextLocation(Move.EAST);
-          break;
-        case "WEST":
-          location = this.getNextLocation(Move.WEST);
-          break;
-        default:
-          throw new IllegalStateException("Unexpected value: " + currMove);
-      }
+    for (int i = 0; i < this.doorCount; i++) {
+      Location location = getNeighbor(getDoor(i));
 
       if (location.getOtyugh() != null) {
         nearbyOtyughCount += 1;
       }
 
-      List<String> nextPossibleMoves = location.getPossibleMoves();
-      //System.out.println(currPossibleMoves);
-      for (String nextMove : nextPossibleMoves) {
-        Location nextLocation;
-
-        switch (nextMove) {
-          case "NORTH":
-            nextLocation = location.getNextLocation(Move.NORTH);
-            break;
-          case "SOUTH":
-            nextLocation = location.getNextLocation(Move.SOUTH);
-            break;
-          case "EAST":
-            nextLocation = location.getNextLocation(Move.EAST);
-            break;
-          case "WEST":
-            nextLocation = location.getNextLocation(Move.WEST);
-            break;
-          default:
-            throw new IllegalStateException("Unexpected value: " + currMove);
-        }
-
-        if (nextLocation.getOtyugh() != null) {
+      for (Move nextMove : Move.values()) {
+        Location nextLocation = location.getNeighbor(nextMove);
+        if (nextLocation != null && nextLocation.getOtyugh() != null) {
           farOtyughCount += 1;
         }
       }
@@ -208,30 +309,29 @@ public class Cave implements Location {
       sb.append("\nA terrible smell is coming from nearby");
     }
 
+    sb.append(describe());
+    return sb.toString();
+  }
+
+  /**
+   * Describes the cave apart from its smell - the items found in it and its doors.
+   *
+   * @return description of the cave
+   */
+  private String describe() {
+    StringBuilder sb = new StringBuilder();
     sb.append("\nYou are in a cave");
 
-    if (this.treasure.size() > 0 || this.arrows > 0) {
+    if (this.treasureCount > 0 || this.arrows > 0) {
       sb.append("\nYou find");
 
       if (this.arrows > 0) {
         sb.append(" ").append(this.arrows).append(" Arrow");
       }
 
-      if (this.treasure.size() > 0) {
-        Map<String, Integer> treasureCount = new HashMap<>();
-
-        for (Treasure treasure : this.treasure) {
-          if (treasureCount.containsKey(treasure.toString())) {
-            treasureCount.put(treasure.toString(), treasureCount.get(treasure.toString()) + 1);
-          } else {
-            treasureCount.put(treasure.toString(), 1);
-          }
-        }
-
-        for (String treasure : treasureCount.keySet()) {
-          if (treasureCount.get(treasure) > 0) {
-            sb.append(" ").append(treasureCount.get(treasure)).append(" ").append(treasure);
-          }
+      for (TreasureKind kind : DESCRIPTION_ORDER) {
+        if (this.treasure[kind.ordinal()] > 0) {
+          sb.append(" ").append(this.treasure[kind.ordinal()]).append(" ").append(kind);
         }
       }
       sb.append(" here");
@@ -246,38 +346,24 @@ public class Cave implements Location {
   public String possibleMovesHelper() {
     StringBuilder sb = new StringBuilder();
 
-    List<String> possibleMoves = this.getPossibleMoves();
-
-    for (int i = 0; i < possibleMoves.size(); i++) {
+    for (int i = 0; i < this.doorCount; i++) {
       if (i != 0) {
         sb.append(",");
       }
-      sb.append(" ");
-
-      switch (possibleMoves.get(i)) {
-        case "NORTH":
-          sb.append("N");
-          break;
-        case "EAST":
-          sb.append("E");
-          break;
-        case "SOUTH":
-          sb.append("S");
-          break;
-        case "WEST":
-          sb.append("W");
-          break;
-        default:
-          throw new IllegalArgumentException("Invalid direction");
-      }
+      sb.append(" ").append(getDoor(i).toString().charAt(0));
     }
 
     return sb.toString();
-
   }
 
   @Override
   public void removeOtyugh() {
+    if (this.smellField != null && this.otyugh != null) {
+      this.smellField.removeOtyugh(this.cell);
+    }
+    if (this.listener != null && this.otyugh != null) {
+      this.listener.otyughChanged(this);
+    }
     this.otyugh = null;
   }
 
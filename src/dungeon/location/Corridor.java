@@ -0,0 +1,110 @@
+package dungeon.location;
+
+import dungeon.player.Move;
+
+/**
+ * This class represents the passage between two neighbouring caves. There's a single corridor for
+ * every pair of connected caves, holding the arrows lying in it, and it offers a {@link Tunnel} view
+ * for each of its two directions. The views are only created when they're first asked for. A
+ * subclass can keep the arrows elsewhere by overriding the methods reading and changing them.
+ */
+public class Corridor {
+
+  private final Location first;
+  private final Location second;
+  private final Move direction;
+  private int arrows;
+  private LocationListener listener;
+  private Tunnel forward;
+  private Tunnel backward;
+
+  /**
+   * Initializes a corridor without arrows between the given caves.
+   *
+   * @param first     cave at one end of the corridor
+   * @param second    cave at the other end of the corridor
+   * @param direction direction of the corridor from the first cave to the second cave
+   */
+  public Corridor(Location first, Location second, Move direction) {
+    this.first = first;
+    this.second = second;
+    this.direction = direction;
+    this.arrows = 0;
+  }
+
+  /**
+   * Initializes a corridor which is only entered through the given tunnel.
+   *
+   * @param forward tunnel leading from the first cave to the second cave
+   */
+  Corridor(Tunnel forward) {
+    this(forward.getSource(), forward.getDestination(), forward.getDirection());
+    this.forward = forward;
+  }
+
+  /**
+   * Sets the listener told about every change to the arrows in the corridor.
+   *
+   * @param listener listener of the corridor, null for none
+   */
+  public void setListener(LocationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Gets the tunnel leading through the corridor in the direction of the given move.
+   *
+   * @param move direction of the corridor, or its opposite
+   * @return tunnel in the direction of the move
+   * @throws IllegalArgumentException if the corridor doesn't lead in the direction of the move
+   */
+  public Tunnel towards(Move move) {
+    if (move == this.direction) {
+      if (this.forward == null) {
+        this.forward = new Tunnel(this.first, this.second, this.direction, this);
+      }
+      return this.forward;
+    }
+
+    if (move == this.direction.getOpposite()) {
+      if (this.backward == null) {
+        this.backward = new Tunnel(this.second, this.first, move, this);
+      }
+      return this.backward;
+    }
+    throw new IllegalArgumentException("Corridor doesn't lead " + move);
+  }
+
+  /**
+   * Gets the number of arrows lying in the corridor.
+   *
+   * @return number of arrows
+   */
+  protected int getArrowCount() {
+    return this.arrows;
+  }
+
+  /**
+   * Adds an arrow to the corridor.
+   */
+  protected void addArrow() {
+    this.arrows += 1;
+    if (this.listener != null) {
+      this.listener.tunnelArrowsChanged(1);
+    }
+  }
+
+  /**
+   * Removes all the arrows from the corridor.
+   *
+   * @return number of arrows removed
+   */
+  protected int pickupArrow() {
+    int temp = this.arrows;
+    this.arrows = 0;
+    if (this.listener != null && temp > 0) {
+      this.listener.tunnelArrowsChanged(-temp);
+    }
+    return temp;
+  }
+}
@@ -4,6 +4,7 @@ import dungeon.otyugh.Otyugh;
 import dungeon.player.Move;
 import dungeon.position.Position;
 import dungeon.treasure.Treasure;
+import dungeon.treasure.TreasureKind;
 import java.util.List;
 
 /**
@@ -26,6 +27,30 @@ public interface Location {
    */
   Location getNextLocation(Move move);
 
+  /**
+   * Gets the location reached from the current location upon taking a move, without allocating.
+   *
+   * @param move move to be taken
+   * @return next location, null if the move is not possible
+   */
+  Location getNeighbor(Move move);
+
+  /**
+   * Gets the tunnel leading from the current location in the direction of the given move.
+   *
+   * @param move move to be taken
+   * @return tunnel in the direction of the move, null if there's none
+   */
+  Tunnel getTunnel(Move move);
+
+  /**
+   * Gets the bitmask of the moves possible from the current location, with the bit
+   * {@link Move#getMask()} set for every possible move.
+   *
+   * @return bitmask of possible moves
+   */
+  int getDoorMask();
+
   /**
    * Get the list of treasures present in the current location.
    *
@@ -33,6 +58,14 @@ public interface Location {
    */
   List<Treasure> getTreasure();
 
+  /**
+   * Get the number of treasures of the given kind present in the current location.
+   *
+   * @param kind kind of treasure
+   * @return number of treasures of the kind
+   */
+  int getTreasureCount(TreasureKind kind);
+
   /**
    * Get the position of the current location.
    *
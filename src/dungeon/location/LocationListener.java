@@ -0,0 +1,42 @@
+package dungeon.location;
+
+import dungeon.treasure.TreasureKind;
+
+/**
+ * This interface represents a listener which is told about every change to the items lying in a
+ * location and to the otyugh of a cave, so that totals over many locations can be kept and the
+ * changed caves can be found without scanning them.
+ */
+public interface LocationListener {
+
+  /**
+   * Called when treasure of the given kind is added to or picked up from a cave.
+   *
+   * @param cave  cave the treasure changed in
+   * @param kind  kind of treasure
+   * @param delta change in the number of treasures of the kind
+   */
+  void treasureChanged(Location cave, TreasureKind kind, int delta);
+
+  /**
+   * Called when arrows are added to or picked up from a cave.
+   *
+   * @param cave  cave the arrows changed in
+   * @param delta change in the number of arrows in the cave
+   */
+  void caveArrowsChanged(Location cave, int delta);
+
+  /**
+   * Called when an otyugh is added to or removed from a cave.
+   *
+   * @param cave cave the otyugh changed in
+   */
+  void otyughChanged(Location cave);
+
+  /**
+   * Called when arrows are added to or picked up from a tunnel.
+   *
+   * @param delta change in the number of arrows in the tunnel
+   */
+  void tunnelArrowsChanged(int delta);
+}
@@ -0,0 +1,249 @@
+package dungeon.location;
+
+import dungeon.player.Move;
+import java.util.Arrays;
+
+/**
+ * This class keeps the intensity of the smell of otyughs in every cave of a dungeon. An otyugh at a
+ * path distance d between 1 and the scent radius k adds 2^(k - d) to the intensity of a cave once
+ * for every shortest path leading to it, so with the default radius of 2 an otyugh next to the cave
+ * adds 2 and an otyugh two caves away adds 1 for each of the caves between them it can be reached
+ * through. An otyugh in the cave itself is smelled coming back in through every door of the cave,
+ * as if it were two caves away once per door. With the default radius this is exactly the count of
+ * otyughs one and two moves away from the cave, taking every way of getting there.
+ *
+ * <p>A smell of an intensity of at least 2^(k - 1), as much as a single otyugh next to the cave, is
+ * terrible, and any weaker smell is less pungent.
+ *
+ * <p>The intensity is updated whenever an otyugh is added or removed, by a Breadth-First Search
+ * (BFS) bounded by the radius around the otyugh, so only the caves whose smell changes are visited.
+ * The search counts the shortest paths to every cave it visits as it goes. Reading the smell of a
+ * cave takes constant time. The intensities are only allocated once the first otyugh is added, at 2
+ * bytes per cave, and the search marks the caves it visited in a square around the otyugh rather
+ * than over the whole dungeon.
+ */
+public class SmellField {
+
+  /**
+   * Largest supported scent radius, for which the intensity of a cave still fits in a short.
+   */
+  public static final int MAX_RADIUS = 8;
+
+  private final int rows;
+  private final int cols;
+  private final byte[] doors;
+  private final int radius;
+  // a cave has at most 4 * 3^(d - 1) shortest paths to the caves at distance d, so its intensity
+  // stays below 25477 up to a radius of 8
+  private short[] intensity;
+  private final int[] mark;
+  private final int[] depth;
+  private final int[] paths;
+  private int[] queue;
+  private int epoch;
+
+  /**
+   * Initializes a field without any otyughs over the given doors.
+   *
+   * @param rows   number of rows in dungeon
+   * @param cols   number of columns in dungeon
+   * @param doors  bitmask of open doors of every cell, see {@link Move#getMask()}
+   * @param radius largest path distance an otyugh can be smelled from
+   * @throws IllegalArgumentException if the radius is not between 1 and {@link #MAX_RADIUS}
+   */
+  public SmellField(int rows, int cols, byte[] doors, int radius) {
+    if (radius < 1 || radius > MAX_RADIUS) {
+      throw new IllegalArgumentException("Scent radius must be between 1 and " + MAX_RADIUS);
+    }
+
+    if (doors == null || doors.length != rows * cols) {
+      throw new IllegalArgumentException("Doors must be given for every cell");
+    }
+
+    this.rows = rows;
+    this.cols = cols;
+    this.doors = doors;
+    this.radius = radius;
+    this.intensity = null;
+    this.mark = new int[(2 * radius + 1) * (2 * radius + 1)];
+    this.depth = new int[mark.length];
+    this.paths = new int[mark.length];
+    this.queue = new int[16];
+    this.epoch = 0;
+  }
+
+  /**
+   * Gets the scent radius of the field.
+   *
+   * @return largest path distance an otyugh can be smelled from
+   */
+  public int getRadius() {
+    return this.radius;
+  }
+
+  /**
+   * Adds the smell of an otyugh in the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   */
+  public void addOtyugh(int cell) {
+    spread(cell, 1);
+  }
+
+  /**
+   * Removes the smell of an otyugh in the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   */
+  public void removeOtyugh(int cell) {
+    spread(cell, -1);
+  }
+
+  /**
+   * Gets the intensity of the smell in the given cell.
+   *
+   * @param cell index of the cell, {@code row * cols + col}
+   * @return intensity of the smell, 0 if no otyugh can be smelled
+   */
+  public int getIntensity(int cell) {
+    return this.intensity == null ? 0 : this.intensity[cell];
+  }
+
+  /**
+   * Gets the level of a smell of the given intensity.
+   *
+   * @param intensity intensity of the smell
+   * @param radius    scent radius the intensity was computed for
+   * @return 0 if there's no smell, 1 for a less pungent smell and 2 for a terrible smell
+   */
+  public static int level(int intensity, int radius) {
+    if (intensity <= 0) {
+      return 0;
+    }
+    return intensity >= weight(1, radius) ? 2 : 1;
+  }
+
+  /**
+   * Gets the description of a smell of the given intensity, as it appears in the description of a
+   * cave.
+   *
+   * @param intensity intensity of the smell
+   * @param radius    scent radius the intensity was computed for
+   * @return description of the smell, empty if there's no smell
+   */
+  public static String describe(int intensity, int radius) {
+    switch (level(intensity, radius)) {
+      case 2 :
+        return "\nA terrible smell is coming from nearby";
+      case 1 :
+        return "\nA less pungent smell is coming from nearby";
+      default :
+        return "";
+    }
+  }
+
+  /**
+   * Gets the intensity an otyugh at the given path distance adds to the smell of a cave.
+   *
+   * @param distance path distance of the otyugh
+   * @param radius   scent radius
+   * @return intensity added, 0 if the otyugh is beyond the radius
+   */
+  private static int weight(int distance, int radius) {
+    return distance > radius ? 0 : 1 << (radius - distance);
+  }
+
+  /**
+   * Adds the weights of an otyugh in the given cell to every cell within the radius, once for every
+   * shortest path from the otyugh to the cell, multiplied by the given sign.
+   *
+   * @param source index of the cell of the otyugh
+   * @param sign   1 to add the otyugh and -1 to remove it
+   */
+  private void spread(int source, int sign) {
+    if (intensity == null) {
+      intensity = new short[rows * cols];
+    }
+    if (epoch == Integer.MAX_VALUE) {
+      Arrays.fill(mark, 0);
+      epoch = 0;
+    }
+    epoch += 1;
+    int head = 0;
+    int tail = 0;
+    int distance = 0;
+
+    int sourceRow = source / cols;
+    int sourceCol = source % cols;
+    queue[tail++] = source;
+    int sourceIndex = markIndex(source, sourceRow, sourceCol);
+    mark[sourceIndex] = epoch;
+    depth[sourceIndex] = 0;
+    paths[sourceIndex] = 1;
+    while (head < tail && distance <= radius) {
+      // visit one level of the search at a time, so every path to a cave is counted before it's
+      // visited
+      int levelEnd = tail;
+      while (head < levelEnd) {
+        int cell = queue[head++];
+        int pathCount = paths[markIndex(cell, sourceRow, sourceCol)];
+        if (distance == 0) {
+          intensity[cell] += sign * Integer.bitCount(doors[cell] & 0xF) * weight(2, radius);
+        } else {
+          intensity[cell] += sign * pathCount * weight(distance, radius);
+        }
+
+        if (distance == radius) {
+          continue;
+        }
+
+        for (Move move : Move.values()) {
+          if ((doors[cell] & move.getMask()) != 0) {
+            int child = move.step(cell, rows, cols);
+            int index = markIndex(child, sourceRow, sourceCol);
+            if (mark[index] == epoch) {
+              // another shortest path to a cave of the next level
+              if (depth[index] == distance + 1) {
+                paths[index] += pathCount;
+              }
+            } else {
+              mark[index] = epoch;
+              depth[index] = distance + 1;
+              paths[index] = pathCount;
+              if (tail == queue.length) {
+                int[] larger = new int[2 * queue.length];
+                System.arraycopy(queue, 0, larger, 0, tail);
+                queue = larger;
+              }
+              queue[tail++] = child;
+            }
+          }
+        }
+      }
+      distance += 1;
+    }
+  }
+
+  /**
+   * Gets the index of a cell within the square of caves around the source of a search. Every cave
+   * within the radius of the source has its own index, even when the dungeon wraps around within
+   * the square, since the offsets of the cave from the source are taken modulo the dimensions of
+   * the dungeon.
+   *
+   * @param cell      index of the cell, within the radius of the source
+   * @param sourceRow row of the source
+   * @param sourceCol column of the source
+   * @return index within the square
+   */
+  private int markIndex(int cell, int sourceRow, int sourceCol) {
+    int rowOffset = Math.floorMod(cell / cols - sourceRow, rows);
+    int colOffset = Math.floorMod(cell % cols - sourceCol, cols);
+    if (rowOffset > radius) {
+      rowOffset -= rows;
+    }
+    if (colOffset > radius) {
+      colOffset -= cols;
+    }
+    return (rowOffset + radius) * (2 * radius + 1) + colOffset + radius;
+  }
+}
@@ -4,19 +4,21 @@ import dungeon.otyugh.Otyugh;
 import dungeon.player.Move;
 import dungeon.position.PositionImpl;
 import dungeon.treasure.Treasure;
+import dungeon.treasure.TreasureKind;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
- * This class implements the functionalities of a tunnel present in a cave.
+ * This class implements the functionalities of a tunnel present in a cave. A tunnel is one direction
+ * of a {@link Corridor}, which holds the arrows shared by both directions.
  */
 public class Tunnel implements Location {
 
   private final Move direction;
   private final Location source;
   private final Location destination;
-  private int arrows;
+  private final Corridor corridor;
 
   /**
    * Initializes the source location of the tunnel, destination location of the tunnel and the
@@ -31,7 +33,43 @@ public class Tunnel implements Location {
     this.source = source;
     this.destination = destination;
     this.direction = direction;
-    this.arrows = 0;
+    this.corridor = new Corridor(this);
+  }
+
+  /**
+   * Initializes a tunnel as one direction of the given corridor. A subclass which keeps the arrows
+   * of the tunnel itself passes no corridor, and overrides {@link #getCorridor()} along with the
+   * methods reading and changing the arrows.
+   *
+   * @param source      source location of the tunnel
+   * @param destination destination location of the tunnel
+   * @param direction   direction of the tunnel, which is the direction from source to destination
+   *                    location
+   * @param corridor    corridor the tunnel leads through, null for a subclass keeping the arrows
+   */
+  protected Tunnel(Location source, Location destination, Move direction, Corridor corridor) {
+    this.source = source;
+    this.destination = destination;
+    this.direction = direction;
+    this.corridor = corridor;
+  }
+
+  /**
+   * Sets the listener told about every change to the arrows in the tunnel.
+   *
+   * @param listener listener of the tunnel, null for none
+   */
+  public void setListener(LocationListener listener) {
+    getCorridor().setListener(listener);
+  }
+
+  /**
+   * Get the corridor the tunnel leads through.
+   *
+   * @return corridor of the tunnel
+   */
+  public Corridor getCorridor() {
+    return this.corridor;
   }
 
   /**
@@ -63,8 +101,9 @@ public class Tunnel implements Location {
 
   @Override
   public String toString() {
-    if (this.arrows != 0) {
-      return "\nYou picked up " + this.arrows + " arrows\n";
+    int count = getArrowCount();
+    if (count != 0) {
+      return "\nYou picked up " + count + " arrows\n";
     }
     return "";
   }
@@ -84,6 +123,27 @@ public class Tunnel implements Location {
     throw new IllegalArgumentException("Invalid move for Tunnel");
   }
 
+  @Override
+  public Location getNeighbor(Move move) {
+    if (move == this.direction) {
+      return this.destination;
+    }
+    return null;
+  }
+
+  @Override
+  public Tunnel getTunnel(Move move) {
+    if (move == this.direction) {
+      return this;
+    }
+    return null;
+  }
+
+  @Override
+  public int getDoorMask() {
+    return this.direction.getMask();
+  }
+
   @Override
   public List<Treasure> getTreasure() {
     // reason for returning null is a tunnel doesn't have a treasure instead the cave which it is
@@ -91,6 +151,12 @@ public class Tunnel implements Location {
     return null;
   }
 
+  @Override
+  public int getTreasureCount(TreasureKind kind) {
+    // a tunnel never holds treasure, only the caves it connects do.
+    return 0;
+  }
+
   @Override
   public PositionImpl getPosition() {
     // reason for returning null is tunnel doesn't have a position instead the cave which it is
@@ -142,14 +208,12 @@ public class Tunnel implements Location {
 
   @Override
   public int pickupArrow() {
-    int temp = this.arrows;
-    this.arrows = 0;
-    return temp;
+    return getCorridor().pickupArrow();
   }
 
   @Override
   public void addArrow() {
-    this.arrows += 1;
+    getCorridor().addArrow();
   }
 
   @Override
@@ -164,8 +228,7 @@ public class Tunnel implements Location {
 
   @Override
   public int getArrowCount() {
-    int arrowCount = this.arrows;
-    return arrowCount;
+    return getCorridor().getArrowCount();
   }
 
 
@@ -0,0 +1,11 @@
+package dungeon.player;
+
+/**
+ * This represents an enumeration class for the ways an arrow can fly. A straight arrow keeps its
+ * direction through every location and is lost as soon as there's no door ahead of it. A curved
+ * arrow follows a tunnel through its bends and only flies straight through caves, so only caves
+ * count towards the distance of the shot.
+ */
+public enum ArrowFlight {
+  STRAIGHT, CURVED
+}
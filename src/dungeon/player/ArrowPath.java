@@ -0,0 +1,20 @@
+package dungeon.player;
+
+import dungeon.location.Location;
+
+/**
+ * This interface represents the path of an arrow through the dungeon, which decides the location
+ * an arrow shot by the player lands in.
+ */
+public interface ArrowPath {
+
+  /**
+   * Finds the location an arrow shot from the given location lands in.
+   *
+   * @param from      location the arrow is shot from
+   * @param direction direction the arrow is shot in
+   * @param distance  the given distance i.e. the number of caves
+   * @return location the arrow lands in, or null if the arrow is lost in the darkness
+   */
+  Location land(Location from, Move direction, int distance);
+}
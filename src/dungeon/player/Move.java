@@ -5,5 +5,56 @@ package dungeon.player;
  * from the current location - North, East, South and West.
  */
 public enum Move {
-  NORTH, EAST, SOUTH, WEST;
+  NORTH(-1, 0), EAST(0, 1), SOUTH(1, 0), WEST(0, -1);
+
+  private final int rowOffset;
+  private final int colOffset;
+
+  Move(int rowOffset, int colOffset) {
+    this.rowOffset = rowOffset;
+    this.colOffset = colOffset;
+  }
+
+  /**
+   * Get the move in the opposite direction, i.e. the direction of the tunnel from the destination
+   * location back to the source location.
+   *
+   * @return the opposite move
+   */
+  public Move getOpposite() {
+    switch (this) {
+      case NORTH:
+        return SOUTH;
+      case EAST:
+        return WEST;
+      case SOUTH:
+        return NORTH;
+      default:
+        return EAST;
+    }
+  }
+
+  /**
+   * Get the bit representing this move in a bitmask of open doors, i.e. {@code 1 << ordinal()}.
+   *
+   * @return bit of this move
+   */
+  public int getMask() {
+    return 1 << ordinal();
+  }
+
+  /**
+   * Get the index of the cell reached by taking this move from the given cell, wrapping around the
+   * edges of the grid. The index of the cell at (row, col) is {@code row * cols + col}.
+   *
+   * @param cell index of the cell
+   * @param rows number of rows in the grid
+   * @param cols number of columns in the grid
+   * @return index of the neighbouring cell in the direction of this move
+   */
+  public int step(int cell, int rows, int cols) {
+    int row = (cell / cols + rowOffset + rows) % rows;
+    int col = (cell % cols + colOffset + cols) % cols;
+    return row * cols + col;
+  }
 }
@@ -0,0 +1,18 @@
+package dungeon.player;
+
+import dungeon.location.Location;
+
+/**
+ * This interface represents a listener which is told every time the player moves, so the
+ * locations visited by the player can be kept track of without asking the player for its location
+ * again and again.
+ */
+public interface MoveListener {
+
+  /**
+   * Tells the listener the player has moved to the given location.
+   *
+   * @param location location the player moved to
+   */
+  void moved(Location location);
+}
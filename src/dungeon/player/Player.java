@@ -49,6 +49,17 @@ public interface Player {
    */
   String move(String direction);
 
+  /**
+   * Moves the player from the current location in the given direction to the next location,
+   * picking up the arrows lying in the tunnel on the way. {@throws IllegalArgumentException} if
+   * the move is not possible {@throws IllegalStateException} if the player is dead after moving to
+   * the new location
+   *
+   * @param move the given direction
+   * @return an empty string or You are in a tunnel, you picked up Arrow
+   */
+  String move(Move move);
+
   /**
    * Get the name of the player.
    *
@@ -91,6 +102,20 @@ public interface Player {
    */
   String shoot(int distance, Move direction);
 
+  /**
+   * Sets the path the arrows shot by the player follow.
+   *
+   * @param arrowPath path of the arrows, null for arrows flying straight
+   */
+  void setArrowPath(ArrowPath arrowPath);
+
+  /**
+   * Sets the listener told every time the player moves.
+   *
+   * @param listener listener of the moves of the player, null for none
+   */
+  void setMoveListener(MoveListener listener);
+
   /**
    * Get the number of arrows from the player's current location.
    *
@@ -2,10 +2,12 @@ package dungeon.player;
 
 import dungeon.location.Location;
 import dungeon.location.Tunnel;
+import dungeon.otyugh.Otyugh;
 import dungeon.treasure.Treasure;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
 
 /**
  * This class implements the functionalities of a Player. This includes moving the player to a given
@@ -18,6 +20,9 @@ public class PlayerImpl implements Player {
   private List<Treasure> treasure;
   private Location currLocation;
   private int arrows = 3;
+  private final SplittableRandom random;
+  private ArrowPath arrowPath;
+  private MoveListener moveListener;
 
   /**
    * Initializes a player's name, their current location and instantiates a player's treasures.
@@ -26,9 +31,25 @@ public class PlayerImpl implements Player {
    * @param currLocation the current location of the player i.e. the start state
    */
   public PlayerImpl(String name, Location currLocation) {
+    this(name, currLocation, new SplittableRandom());
+  }
+
+  /**
+   * Initializes a player's name, their current location, the random source deciding whether a
+   * wounded otyugh eats the player and instantiates a player's treasures.
+   *
+   * @param name         name of the player
+   * @param currLocation the current location of the player i.e. the start state
+   * @param random       source of randomness for the player
+   */
+  public PlayerImpl(String name, Location currLocation, SplittableRandom random) {
+    if (random == null) {
+      throw new IllegalArgumentException("Random cannot be null");
+    }
     this.name = name;
     this.currLocation = currLocation;
     this.treasure = new ArrayList<>();
+    this.random = random;
   }
 
   @Override
@@ -52,12 +73,14 @@ public class PlayerImpl implements Player {
   @Override
   public void move(Location location) {
     this.currLocation = location;
+    if (this.moveListener != null) {
+      this.moveListener.moved(location);
+    }
   }
 
   @Override
   public String move(String direction) {
     Move move;
-    String sb = "";
 
     switch (direction) {
       case "N" :
@@ -76,23 +99,32 @@ public class PlayerImpl implements Player {
         throw new IllegalArgumentException("Invalid direction");
     }
 
-    List<Tunnel> tunnelList = new ArrayList<>(this.currLocation.getTunnel());
-    for (Tunnel tunnel : tunnelList) {
-      if (tunnel.getDirection().toString().equals(move.toString())) {
-        int tunnelArrows = tunnel.pickupArrow();
-        if (tunnelArrows > 0) {
-          this.arrows += tunnel.pickupArrow();
-          sb = "\nYou are in a tunnel\nYou picked up " + tunnelArrows + " Arrow\n";
-          break;
-        }
+    return move(move);
+  }
+
+  @Override
+  public String move(Move move) {
+    String sb = "";
+
+    // the tunnel is emptied by a single pickup, so its arrows are only counted once
+    Tunnel tunnel = this.currLocation.getTunnel(move);
+    if (tunnel != null) {
+      int tunnelArrows = tunnel.pickupArrow();
+      if (tunnelArrows > 0) {
+        this.arrows += tunnelArrows;
+        sb = "\nYou are in a tunnel\nYou picked up " + tunnelArrows + " Arrow\n";
       }
     }
 
     this.currLocation = this.currLocation.getNextLocation(move);
+    if (this.moveListener != null) {
+      this.moveListener.moved(this.currLocation);
+    }
+
     if (this.currLocation.getOtyugh() != null) {
       if (!(this.currLocation.getOtyugh().isDead())) {
         if (this.currLocation.getOtyugh().isHit()) {
-          if (Math.random() < 0.5) {
+          if (random.nextDouble() < 0.5) {
             throw new IllegalStateException("Player is dead");
           }
         } else {
@@ -156,28 +188,25 @@ public class PlayerImpl implements Player {
       throw new IllegalStateException("No arrows left");
     }
 
-    int distCount = 0;
-    Location nextLocation = this.currLocation;
     this.arrows -= 1;
-
-    while (distCount < distance) {
-      if (!(nextLocation.getPossibleMoves().contains(direction.toString()))) {
-        return "\nYou shoot an arrow into the darkness\n";
-      }
-
-      nextLocation = nextLocation.getNextLocation(direction);
-      distCount += 1;
+    Location nextLocation;
+    if (this.arrowPath == null) {
+      nextLocation = flyStraight(distance, direction);
+    } else {
+      nextLocation = this.arrowPath.land(this.currLocation, direction, distance);
     }
 
-    if (nextLocation.getOtyugh() == null) {
+    // the otyugh is kept since a location may stop handing it out once it dies
+    Otyugh otyugh = nextLocation == null ? null : nextLocation.getOtyugh();
+    if (otyugh == null) {
       return "\nYou shoot an arrow into the darkness\n";
     }
 
-    if (!(nextLocation.getOtyugh().isDead())) {
-      nextLocation.getOtyugh().updateHit();
+    if (!(otyugh.isDead())) {
+      otyugh.updateHit();
     }
 
-    if (nextLocation.getOtyugh().isDead()) {
+    if (otyugh.isDead()) {
       nextLocation.removeOtyugh();
       return "\nYou killed an Otyugh\n";
     }
@@ -185,6 +214,38 @@ public class PlayerImpl implements Player {
 
   }
 
+  @Override
+  public void setArrowPath(ArrowPath arrowPath) {
+    this.arrowPath = arrowPath;
+  }
+
+  @Override
+  public void setMoveListener(MoveListener listener) {
+    this.moveListener = listener;
+  }
+
+  /**
+   * Finds the location an arrow shot straight from the current location lands in.
+   *
+   * @param distance  the given distance i.e. the number of locations
+   * @param direction the given direction - NORTH, SOUTH, EAST OR WEST
+   * @return location the arrow lands in, or null if there's no door ahead of it on the way
+   */
+  private Location flyStraight(int distance, Move direction) {
+    int distCount = 0;
+    Location nextLocation = this.currLocation;
+
+    while (distCount < distance) {
+      if ((nextLocation.getDoorMask() & direction.getMask()) == 0) {
+        return null;
+      }
+
+      nextLocation = nextLocation.getNeighbor(direction);
+      distCount += 1;
+    }
+    return nextLocation;
+  }
+
   @Override
   public int getArrows() {
     return this.arrows;
@@ -0,0 +1,56 @@
+package dungeon.treasure;
+
+/**
+ * This enum represents the kinds of treasure. Every kind is a single shared instance, so a location
+ * only needs to count the treasure of each kind instead of keeping an object per item.
+ */
+public enum TreasureKind implements Treasure {
+  RUBY("Ruby"),
+  SAPPHIRE("Sapphire"),
+  DIAMOND("Diamond");
+
+  private final String name;
+
+  TreasureKind(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Gets the kind of treasure with the given name.
+   *
+   * @param name name of the treasure - Ruby, Sapphire or Diamond
+   * @return kind of treasure
+   * @throws IllegalArgumentException if there's no treasure with the given name
+   */
+  public static TreasureKind of(String name) {
+    for (TreasureKind kind : values()) {
+      if (kind.name.equals(name)) {
+        return kind;
+      }
+    }
+    throw new IllegalArgumentException("Invalid Treasure");
+  }
+
+  /**
+   * Gets the kind of the given treasure.
+   *
+   * @param treasure given treasure
+   * @return kind of treasure
+   * @throws IllegalArgumentException if the treasure is null or of an unknown kind
+   */
+  public static TreasureKind of(Treasure treasure) {
+    if (treasure == null) {
+      throw new IllegalArgumentException("Treasure cannot be null");
+    }
+
+    if (treasure instanceof TreasureKind) {
+      return (TreasureKind) treasure;
+    }
+    return of(treasure.toString());
+  }
+
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
@@ -1,26 +1,56 @@
 package dungeontest.dungeonmodeltest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import com.sun.management.ThreadMXBean;
+import dungeon.dungeonmodel.CompactDungeon;
 import dungeon.dungeonmodel.Dungeon;
 import dungeon.dungeonmodel.DungeonModel;
+import dungeon.dungeonmodel.DungeonSnapshot;
+import dungeon.dungeonmodel.SharedDungeon;
+import dungeon.kruskal.DisjointSet;
+import dungeon.kruskal.EllerGenerator;
 import dungeon.kruskal.Kruskal;
 import dungeon.kruskal.KruskalImpl;
+import dungeon.kruskal.TiledKruskal;
+import dungeon.location.Cave;
 import dungeon.location.Location;
+import dungeon.location.SmellField;
 import dungeon.location.Tunnel;
+import dungeon.otyugh.OtyughImpl;
+import dungeon.player.ArrowFlight;
 import dungeon.player.Move;
+import dungeon.player.Player;
 import dungeon.position.Position;
 import dungeon.position.PositionImpl;
+import dungeon.treasure.Ruby;
+import dungeon.treasure.TreasureKind;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -32,17 +62,24 @@ public class DungeonModelTest {
   private Kruskal kruskal;
   private DungeonModel model1;
   private DungeonModel model2;
+  private DungeonModel model3;
+  private DungeonModel compactModel;
 
   /**
-   * Instantiate 2 dungeon models - non-wrapping and wrapping and enter the player in the dungeon.
+   * Instantiate 2 dungeon models - non-wrapping and wrapping, a seeded wrapping dungeon and a
+   * compact dungeon built with the same seed, and enter the player in each dungeon.
    */
   @Before
   public void setUp() {
     kruskal = new KruskalImpl();
     model1 = new Dungeon(true, 4, 6, 0);
     model2 = new Dungeon(false, 4, 6, 4);
+    model3 = new Dungeon(false, 8, 8, 2, 7L);
+    compactModel = new CompactDungeon(false, 8, 8, 2, 7L);
     model1.enterPlayer();
     model2.enterPlayer();
+    model3.enterPlayer();
+    compactModel.enterPlayer();
   }
 
   /**
@@ -77,15 +114,38 @@ public class DungeonModelTest {
   }
 
   /**
-   * Test if the distance between start and end location is at least 5.
+   * Test if the path distance between start and end location is at least 5.
    */
   @Test
   public void testStartAndEndDistance() {
-    Position startPos = model1.getStartState().getPosition();
-    Position endPos = model1.getEndState().getPosition();
-    int distance = Math.abs(endPos.getX() - startPos.getX())
-        + Math.abs(endPos.getY() - startPos.getY());
-    assertTrue(distance >= 5);
+    assertTrue(model1.getShortestPathDistance() >= 5);
+    assertTrue(model2.getShortestPathDistance() >= 5);
+  }
+
+  /**
+   * Test if maximally distant start and end locations are at least as far apart as any other
+   * placement.
+   */
+  @Test
+  public void testMaximallyDistantStartAndEnd() {
+    DungeonModel model = new Dungeon(true, 9, 11, 0, 3L);
+    model.placeStartAndEnd(true);
+    int diameter = model.getShortestPathDistance();
+
+    for (int i = 0; i < 20; i++) {
+      model.placeStartAndEnd(false);
+      assertTrue(model.getShortestPathDistance() >= 5);
+      assertTrue(model.getShortestPathDistance() <= diameter);
+    }
+  }
+
+  /**
+   * Test if an illegal state exception is thrown if start and end are placed after the player has
+   * entered.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testPlaceStartAndEndAfterEnter() {
+    model1.placeStartAndEnd(true);
   }
 
   /**
@@ -387,6 +447,25 @@ public class DungeonModelTest {
     model2.addOtyughs(50);
   }
 
+  /**
+   * Test if every cave other than the start cave gets an Otyugh when the dungeon is full.
+   */
+  @Test
+  public void testFullOtyughs() {
+    model1.addOtyughs(model1.getRows() * model1.getColumns() - 1);
+
+    int otyughCount = 0;
+    for (Location[] row : model1.getLocationGrid()) {
+      for (Location location : row) {
+        if (location.getOtyugh() != null) {
+          otyughCount += 1;
+        }
+      }
+    }
+    assertEquals(model1.getRows() * model1.getColumns() - 1, otyughCount);
+    assertNull(model1.getStartState().getOtyugh());
+  }
+
   /**
    * Test {@throws IllegalArgumentException} if the number of Otyughs are < 0.
    */
@@ -768,5 +847,703 @@ public class DungeonModelTest {
     assertTrue(model1.isNonWrapping());
   }
 
+  /**
+   * Test if two dungeons built with the same seed have the same layout, items and otyughs.
+   */
+  @Test
+  public void testSeededDungeon() {
+    DungeonModel first = new Dungeon(false, 8, 9, 3, 42L);
+    DungeonModel second = new Dungeon(false, 8, 9, 3, 42L);
+    first.addTreasure(60);
+    second.addTreasure(60);
+    first.addOtyughs(5);
+    second.addOtyughs(5);
+
+    assertEquals(42L, first.getSeed());
+    assertEquals(first.getState(), second.getState());
+    assertEquals(first.getStartState().getPosition().toString(),
+        second.getStartState().getPosition().toString());
+    assertEquals(first.getEndState().getPosition().toString(),
+        second.getEndState().getPosition().toString());
+  }
+
+  /**
+   * Test if the rows generated by eller's algorithm form a single connected dungeon, with at most
+   * the given number of extra edges for a wrapping dungeon.
+   */
+  @Test
+  public void testEllerGenerator() {
+    int rows = 40;
+    int cols = 7;
+    DisjointSet locationSet = new DisjointSet(rows * cols);
+    int[] extraEdges = new int[1];
+
+    new EllerGenerator().generate(rows, cols, false, 5, new SplittableRandom(7L),
+        (cell, direction) -> {
+          if (!(locationSet.union(cell, direction.step(cell, rows, cols)))) {
+            extraEdges[0] += 1;
+          }
+        });
+
+    assertEquals(1, locationSet.getCount());
+    assertTrue(extraEdges[0] <= 5);
+  }
+
+  /**
+   * Test if eller's algorithm adds exactly the requested number of extra edges, or every leftover
+   * edge when fewer are left over.
+   */
+  @Test
+  public void testEllerExtraEdgeCount() {
+    int[][] cases = {{6, 6, 4}, {2, 7, 4}, {40, 40, 1000}, {5, 5, 1000}, {1, 9, 3}};
+    for (int[] c : cases) {
+      int rows = c[0];
+      int cols = c[1];
+      int potential = rows * (cols - 1) + (rows - 1) * cols + (rows > 2 ? cols : 0)
+          + (cols > 2 ? rows : 0);
+      int leftovers = potential - (rows * cols - 1);
+      int[] edges = new int[1];
+
+      new EllerGenerator().generate(rows, cols, false, c[2], new SplittableRandom(3L),
+          (cell, direction) -> edges[0] += 1);
+
+      assertEquals(rows * cols - 1 + Math.min(c[2], leftovers), edges[0]);
+    }
+  }
+
+  /**
+   * Test if an interconnectivity larger than the number of leftover edges adds every leftover edge
+   * instead of running out of memory.
+   */
+  @Test
+  public void testHugeInterconnectivity() {
+    assertEquals(2 * 2 * 6 * 6, kruskal.getMSTEdges(6, 6, false, Integer.MAX_VALUE).length);
+
+    int[] edges = new int[1];
+    new TiledKruskal(4, 4, ForkJoinPool.commonPool()).generate(9, 10, false, Integer.MAX_VALUE,
+        new SplittableRandom(5L), (cell, direction) -> edges[0] += 1);
+    assertEquals(2 * 9 * 10, edges[0]);
+  }
+
+  /**
+   * Test if a wrapping dungeon generated in tiles has a spanning tree plus the extra tunnels for its
+   * interconnectivity.
+   */
+  @Test
+  public void testTiledDungeon() {
+    DungeonModel model = new Dungeon(false, 30, 25, 6, 11L,
+        new TiledKruskal(7, 6, ForkJoinPool.commonPool()));
+    int tunnels = 0;
+
+    for (Location[] row : model.getLocationGrid()) {
+      for (Location location : row) {
+        tunnels += location.getTunnel().size();
+      }
+    }
+
+    assertEquals(2 * (30 * 25 - 1 + 6), tunnels);
+    assertEquals(model.getEndState(),
+        model.getBFSTraversal().get(model.getBFSTraversal().size() - 1));
+  }
+
+  /**
+   * Test if a compact dungeon has the same tunnels as a dungeon built with the same seed, and if the
+   * arrows in a tunnel are shared by both of its directions.
+   */
+  @Test
+  public void testCompactDungeon() {
+    Location[][] grid = model3.getLocationGrid();
+    Location[][] compactGrid = compactModel.getLocationGrid();
+
+    for (int i = 0; i < model3.getRows(); i++) {
+      for (int j = 0; j < model3.getColumns(); j++) {
+        assertEquals(new HashSet<>(grid[i][j].getPossibleMoves()),
+            new HashSet<>(compactGrid[i][j].getPossibleMoves()));
+      }
+    }
+
+    Location start = compactModel.getStartState();
+    Tunnel tunnel = start.getTunnel().get(0);
+    tunnel.addArrow();
+    Location next = start.getNextLocation(tunnel.getDirection());
+    assertEquals(start, next.getNextLocation(tunnel.getDirection().getOpposite()));
+    for (Tunnel back : next.getTunnel()) {
+      if (back.getDirection() == tunnel.getDirection().getOpposite()) {
+        assertEquals(1, back.pickupArrow());
+      }
+    }
+    assertEquals(0, compactModel.getArrowCount());
+
+    compactModel.addTreasure(new Ruby(), start);
+    compactModel.addTreasure(new Ruby(), start);
+    assertEquals(2, compactModel.getTreasureCount());
+    assertEquals("Ruby", compactModel.getStartState().pickupTreasure("Ruby").toString());
+    assertEquals(1, start.getTreasure().size());
+  }
+
+  /**
+   * Test if both directions of a tunnel of the compact dungeon lead through the same corridor,
+   * which sees the arrows of the tunnel.
+   */
+  @Test
+  public void testCompactCorridor() {
+    Tunnel tunnel = compactModel.getStartState().getTunnel().get(0);
+    Move back = tunnel.getDirection().getOpposite();
+    Tunnel opposite = tunnel.getDestination().getTunnel(back);
+
+    tunnel.addArrow();
+    assertEquals(tunnel.getCorridor(), opposite.getCorridor());
+    assertEquals(tunnel.getCorridor().hashCode(), opposite.getCorridor().hashCode());
+    assertEquals(back, tunnel.getCorridor().towards(back).getDirection());
+    assertEquals(tunnel.getSource(), tunnel.getCorridor().towards(back).getDestination());
+    assertEquals("\nYou picked up 1 arrows\n", opposite.toString());
+    assertEquals(1, opposite.getCorridor().towards(back).pickupArrow());
+    assertEquals(0, tunnel.getArrowCount());
+  }
+
+  /**
+   * Test if two arrows kill an otyugh in a cave next to the player in the compact dungeon.
+   */
+  @Test
+  public void testCompactDungeonKillOtyugh() {
+    DungeonModel compact = new CompactDungeon(true, 6, 6, 0, 1L);
+    compact.enterPlayer();
+    Location start = compact.getStartState();
+    Move direction = null;
+    for (Tunnel tunnel : start.getTunnel()) {
+      if (tunnel.getDestination().getTunnel().size() != 2) {
+        direction = tunnel.getDirection();
+      }
+    }
+    assertNotNull(direction);
+
+    Location target = start.getNextLocation(direction);
+    target.addOtyugh(new OtyughImpl());
+    assertEquals("", compact.getPlayer().shoot(1, direction));
+    assertTrue(target.getOtyugh().isHit());
+    assertEquals("\nYou killed an Otyugh\n", compact.getPlayer().shoot(1, direction));
+    assertNull(target.getOtyugh());
+  }
+
+  /**
+   * Test if the shortest path leads from the start location to the end location through tunnels,
+   * in as many moves as its distance.
+   */
+  @Test
+  public void testShortestPath() {
+    DungeonModel model = new Dungeon(false, 12, 10, 8, 5L);
+    List<Location> path = model.getShortestPath();
+
+    assertEquals(model.getStartState(), path.get(0));
+    assertEquals(model.getEndState(), path.get(path.size() - 1));
+    assertEquals(path.size() - 1, model.getShortestPathDistance());
+    assertTrue(path.size() <= model.getBFSTraversal().size());
+
+    for (int i = 1; i < path.size(); i++) {
+      boolean adjacent = false;
+      for (Tunnel tunnel : path.get(i - 1).getTunnel()) {
+        adjacent |= tunnel.getDestination().equals(path.get(i));
+      }
+      assertTrue(adjacent);
+    }
+  }
+
+  /**
+   * Test if both caves at the ends of a corridor share its arrows.
+   */
+  @Test
+  public void testSharedCorridor() {
+    Location start = model3.getStartState();
+    Tunnel tunnel = start.getTunnel().get(0);
+    Move back = tunnel.getDirection().getOpposite();
+    int arrows = model3.getTunnelArrowCount();
+
+    tunnel.addArrow();
+    assertSame(tunnel, start.getTunnel(tunnel.getDirection()));
+    assertSame(tunnel.getCorridor(), tunnel.getDestination().getTunnel(back).getCorridor());
+    assertEquals(arrows + 1, model3.getTunnelArrowCount());
+    int picked = tunnel.getDestination().getTunnel(back).pickupArrow();
+    assertTrue(picked >= 1);
+    assertEquals(0, tunnel.getArrowCount());
+    assertEquals(arrows + 1 - picked, model3.getTunnelArrowCount());
+  }
+
+  /**
+   * Test if a curved arrow follows the bends of the tunnels and kills an otyugh in the first cave
+   * it enters.
+   */
+  @Test
+  public void testCurvedArrowFlight() {
+    assertEquals(ArrowFlight.STRAIGHT, model3.getArrowFlight());
+    model3.setArrowFlight(ArrowFlight.CURVED);
+
+    Move direction = model3.getStartState().getTunnel().get(0).getDirection();
+    Move move = direction;
+    Location cave = model3.getStartState().getNeighbor(move);
+    while (cave.getTunnel().size() == 2) {
+      for (Tunnel tunnel : cave.getTunnel()) {
+        if (tunnel.getDirection() != move.getOpposite()) {
+          move = tunnel.getDirection();
+          break;
+        }
+      }
+      cave = cave.getNeighbor(move);
+    }
+
+    model3.assignOtyugh(cave);
+    String letter = direction.toString().substring(0, 1);
+    assertEquals("", model3.playerShootArrow(1, letter));
+    assertEquals("\nYou killed an Otyugh\n", model3.playerShootArrow(1, letter));
+  }
+
+  /**
+   * Test if moving through a tunnel picks up its arrows exactly once.
+   */
+  @Test
+  public void testMovePicksUpTunnelArrowsOnce() {
+    Player player = model3.getPlayer();
+    Tunnel tunnel = model3.getStartState().getTunnel().get(0);
+    tunnel.addArrow();
+    tunnel.addArrow();
+
+    assertEquals("\nYou are in a tunnel\nYou picked up 2 Arrow\n",
+        player.move(tunnel.getDirection()));
+    assertEquals(5, player.getArrows());
+    assertEquals(0, tunnel.getArrowCount());
+    assertEquals(tunnel.getDestination(), player.getCurrentLocation());
+  }
+
+  /**
+   * Test if moving back and forth through a tunnel allocates no memory once warmed up, beyond a
+   * fixed slack for reading the allocation counter itself.
+   */
+  @Test
+  public void testMoveAllocationFree() {
+    Player player = model3.getPlayer();
+    Move there = model3.getStartState().getTunnel().get(0).getDirection();
+    Move back = there.getOpposite();
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    for (int i = 0; i < 100000; i++) {
+      player.move(there);
+      player.move(back);
+    }
+
+    int moves = 1000000;
+    long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < moves / 2; i++) {
+      player.move(there);
+      player.move(back);
+    }
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+    assertTrue(allocated < 1024);
+    assertEquals(model3.getStartState(), player.getCurrentLocation());
+  }
+
+  /**
+   * Test if a snapshot keeps the state it was taken with and shares the unchanged rows with the
+   * next snapshot.
+   */
+  @Test
+  public void testSnapshot() {
+    DungeonSnapshot first = model3.snapshot();
+    assertSame(first, model3.snapshot());
+
+    Location cave = model3.getLocationGrid()[2][5];
+    model3.addTreasure(TreasureKind.RUBY, cave);
+    cave.addArrow();
+    DungeonSnapshot second = model3.snapshot();
+    assertEquals(0, first.getTreasureCount(2, 5, TreasureKind.RUBY));
+    assertEquals(1, second.getTreasureCount(2, 5, TreasureKind.RUBY));
+    assertEquals(1, second.getArrowCount(2, 5));
+    assertFalse(second.sharesRow(first, 2));
+    assertTrue(second.sharesRow(first, 6));
+
+    model3.assignOtyugh(cave);
+    DungeonSnapshot third = model3.snapshot();
+    assertFalse(first.hasOtyugh(2, 5));
+    assertTrue(third.hasOtyugh(2, 5));
+    for (int i = 0; i < 8; i++) {
+      for (int j = 0; j < 8; j++) {
+        assertEquals(SmellField.level(model3.getSmellIntensity(i, j), model3.getScentRadius()),
+            third.getSmellLevel(i, j));
+        assertEquals(model3.getLocationGrid()[i][j].getDoorMask(), third.getDoorMask(i, j));
+      }
+    }
+    assertEquals(model3.getStartState().getPosition().getX(), third.getPlayerRow());
+    assertEquals(model3.getStartState().getPosition().getY(), third.getPlayerColumn());
+  }
+
+  /**
+   * Test if 64 players moving and picking up items in parallel never collect the same item, so
+   * every item ends up either with exactly one player or still in the dungeon.
+   */
+  @Test
+  public void testSharedDungeonConservesItems() throws InterruptedException {
+    DungeonModel model = new Dungeon(false, 20, 20, 10, 3L);
+    model.addTreasure(100);
+    SharedDungeon shared = new SharedDungeon(model, 1L);
+    int cells = model.getRows() * model.getColumns();
+    int players = 64;
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CountDownLatch ready = new CountDownLatch(1);
+    Thread[] threads = new Thread[players];
+    for (int i = 0; i < players; i++) {
+      SplittableRandom random = new SplittableRandom(i);
+      threads[i] = new Thread(() -> {
+        try {
+          int id = shared.addPlayer("Bot");
+          ready.await();
+          for (int step = 0; step < 2000; step++) {
+            Move move = Move.values()[random.nextInt(4)];
+            if ((shared.getDoorMask(shared.getPlayerCell(id)) & move.getMask()) == 0) {
+              continue;
+            }
+            shared.move(id, move);
+            if (shared.getArrowCount(shared.getPlayerCell(id)) > 0) {
+              try {
+                shared.pickupArrows(id);
+              } catch (NoSuchElementException noSuchElementException) {
+                // another player got there first
+              }
+            }
+            for (TreasureKind kind : TreasureKind.values()) {
+              try {
+                shared.pickupTreasure(id, kind);
+              } catch (IllegalArgumentException illegalArgumentException) {
+                // none left of this kind
+              }
+            }
+          }
+        } catch (Throwable throwable) {
+          failure.set(throwable);
+        }
+      });
+      threads[i].start();
+    }
+    ready.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertEquals(players, shared.getPlayerCount());
+
+    int arrows = 0;
+    int[] treasure = new int[TreasureKind.values().length];
+    for (int id = 0; id < players; id++) {
+      arrows += shared.getPlayerArrows(id) - 3;
+      for (TreasureKind kind : TreasureKind.values()) {
+        treasure[kind.ordinal()] += shared.getPlayerTreasure(id, kind);
+      }
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      arrows += shared.getArrowCount(cell) + shared.getTunnelArrowCount(cell, Move.EAST)
+          + shared.getTunnelArrowCount(cell, Move.SOUTH);
+      for (TreasureKind kind : TreasureKind.values()) {
+        treasure[kind.ordinal()] += shared.getTreasureCount(cell, kind);
+      }
+    }
+
+    assertEquals(model.getArrowCount(), arrows);
+    for (TreasureKind kind : TreasureKind.values()) {
+      assertEquals(model.getTreasureCount(kind), treasure[kind.ordinal()]);
+    }
+  }
+
+  /**
+   * Test if the dungeon lists exactly the caves changed since a version, including the caves the
+   * player left and entered, and asks for everything to be read again when the whole dungeon
+   * changed.
+   */
+  @Test
+  public void testChangedCells() {
+    long version = model3.getVersion();
+    assertEquals(0, model3.getChangedCells(version).length);
+
+    Location cave = model3.getLocationGrid()[2][5];
+    cave.addArrow();
+    cave.addArrow();
+    assertEquals(1, model3.getChangedCells(version).length);
+    assertEquals(2 * 8 + 5, model3.getChangedCells(version)[0]);
+    assertTrue(model3.getCellVersion(2, 5) > version);
+    assertTrue(model3.getCellVersion(6, 1) <= version);
+
+    version = model3.getVersion();
+    Location start = model3.getStartState();
+    Move move = start.getTunnel().get(0).getDirection();
+    model3.getPlayer().move(move);
+    Location next = model3.getPlayer().getCurrentLocation();
+    Set<Integer> changed = new HashSet<>();
+    for (int cell : model3.getChangedCells(version)) {
+      changed.add(cell);
+    }
+    assertTrue(changed.contains(start.getPosition().getX() * 8 + start.getPosition().getY()));
+    assertTrue(changed.contains(next.getPosition().getX() * 8 + next.getPosition().getY()));
+
+    version = model3.getVersion();
+    model3.setScentRadius(3);
+    assertNull(model3.getChangedCells(version));
+  }
+
+  /**
+   * Test if a player move is recorded as it happens, so reading the changes doesn't change them.
+   */
+  @Test
+  public void testChangeReadsArePure() {
+    DungeonModel[] models = {model3, compactModel};
+    for (DungeonModel model : models) {
+      long version = model.getVersion();
+      Location start = model.getStartState();
+      model.getPlayer().move(start.getTunnel().get(0).getDirection());
+      int cell = start.getPosition().getX() * 8 + start.getPosition().getY();
+
+      int[] changed = model.getChangedCells(version);
+      long current = model.getVersion();
+      assertEquals(2, changed.length);
+      assertTrue(model.getCellVersion(cell / 8, cell % 8) > version);
+      assertTrue(Arrays.equals(changed, model.getChangedCells(version)));
+      assertEquals(current, model.getVersion());
+      assertEquals(0, model.getChangedCells(current).length);
+    }
+  }
+
+  /**
+   * Test if the caves visited by the player are kept track of as the player moves.
+   */
+  @Test
+  public void testVisitedCells() {
+    DungeonModel[] models = {model3, compactModel};
+    for (DungeonModel model : models) {
+      Location start = model.getStartState();
+      assertTrue(model.isVisited(start.getPosition().getX(), start.getPosition().getY()));
+      assertEquals(1, model.getVisitedCells().cardinality());
+
+      model.getPlayer().move(start.getTunnel().get(0).getDirection());
+      Location next = model.getPlayer().getCurrentLocation();
+      assertTrue(model.isVisited(next.getPosition().getX(), next.getPosition().getY()));
+      BitSet visited = model.getVisitedCells();
+      assertEquals(2, visited.cardinality());
+
+      visited.clear();
+      assertEquals(2, model.getVisitedCells().cardinality());
+    }
+  }
+
+  /**
+   * Test if a cave counts its treasure by kind and hands out the shared instance of each kind.
+   */
+  @Test
+  public void testTreasureKinds() {
+    Location cave = new Cave(new PositionImpl(0, 0), new ArrayList<>(), new ArrayList<>());
+    cave.addTreasure(new Ruby());
+    cave.addTreasure(TreasureKind.RUBY);
+    cave.addTreasure(TreasureKind.DIAMOND);
+
+    assertEquals(2, cave.getTreasureCount(TreasureKind.RUBY));
+    assertEquals(0, cave.getTreasureCount(TreasureKind.SAPPHIRE));
+    assertTrue(cave.toString().contains("You find 1 Diamond 2 Ruby here"));
+    assertEquals(TreasureKind.RUBY, cave.pickupTreasure("Ruby"));
+    assertEquals(1, cave.getTreasureCount(TreasureKind.RUBY));
+    assertEquals(TreasureKind.of("Sapphire"), TreasureKind.SAPPHIRE);
+  }
+
+  /**
+   * Test if the running totals of treasure and arrows follow items being added and picked up, in
+   * both kinds of dungeon.
+   */
+  @Test
+  public void testRunningTotals() {
+    DungeonModel[] models = {new Dungeon(false, 7, 8, 5, 9L), new CompactDungeon(false, 7, 8, 5, 9L)};
+    for (DungeonModel model : models) {
+      model.addTreasure(80);
+      model.enterPlayer();
+
+      int caveArrows = 0;
+      int rubies = 0;
+      for (Location[] row : model.getLocationGrid()) {
+        for (Location location : row) {
+          caveArrows += location.getArrowCount();
+          rubies += location.getTreasureCount(TreasureKind.RUBY);
+        }
+      }
+
+      // every item added comes with an arrow in the cave or one of its tunnels
+      assertEquals(44, model.getArrowCount());
+      assertEquals(caveArrows, model.getCaveArrowCount());
+      assertEquals(44 - caveArrows, model.getTunnelArrowCount());
+      assertEquals(rubies, model.getTreasureCount(TreasureKind.RUBY));
+      assertEquals(44, model.getTreasureCount());
+
+      int treasure = model.getStartState().getTreasure().size();
+      int arrows = model.getStartState().getArrowCount();
+      model.playerPickupTreasure();
+      if (arrows > 0) {
+        model.playerPickupItem("Arrow");
+      }
+      assertEquals(44 - treasure, model.getTreasureCount());
+      assertEquals(caveArrows - arrows, model.getCaveArrowCount());
+      assertEquals(3 + arrows, model.getPlayerArrowCount());
+    }
+  }
+
+  /**
+   * Test if the state written in ranges of rows, plain or compressed, is the same as the state of
+   * the dungeon.
+   */
+  @Test
+  public void testWriteState() throws IOException {
+    model2.addTreasure(50);
+    StringBuilder sb = new StringBuilder();
+    model2.writeState(sb, 0, 1);
+    model2.writeState(sb, 1, model2.getRows());
+    assertEquals(model2.getState(), sb.toString());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    model2.writeCompressedState(bytes, 0, model2.getRows());
+    Reader reader = new InputStreamReader(
+        new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), StandardCharsets.UTF_8);
+    StringBuilder unzipped = new StringBuilder();
+    for (int c = reader.read(); c != -1; c = reader.read()) {
+      unzipped.append((char) c);
+    }
+    assertEquals(model2.getState(), unzipped.toString());
+  }
+
+  /**
+   * Test if the smell of an otyugh spreads by path distance within the scent radius and goes away
+   * with the otyugh.
+   */
+  @Test
+  public void testSmellField() {
+    Location start = model1.getStartState();
+    Location next = start.getNextLocation(Move.valueOf(start.getPossibleMoves().get(0)));
+    Position position = start.getPosition();
+    model1.assignOtyugh(next);
+
+    assertEquals(2, model1.getSmellIntensity(position.getX(), position.getY()));
+    assertTrue(start.toString().startsWith("\nA terrible smell is coming from nearby"));
+
+    model1.setScentRadius(3);
+    assertEquals(4, model1.getSmellIntensity(position.getX(), position.getY()));
+
+    next.removeOtyugh();
+    assertEquals(0, model1.getSmellIntensity(position.getX(), position.getY()));
+    assertTrue(start.toString().startsWith("\nYou are in a cave"));
+  }
+
+  /**
+   * Test if a smell is terrible from the intensity of a single otyugh next to the cave onwards for
+   * any scent radius, and if an otyugh in the cave itself is smelled once per door as if it were
+   * two caves away.
+   */
+  @Test
+  public void testSmellLevelScalesWithRadius() {
+    byte[] doors = {(byte) Move.EAST.getMask(), (byte) (Move.EAST.getMask() | Move.WEST.getMask()),
+        (byte) Move.WEST.getMask()};
+    SmellField field = new SmellField(1, 3, doors, 3);
+    field.addOtyugh(0);
+
+    assertEquals(1, SmellField.level(field.getIntensity(0), 3));
+    assertEquals(2, SmellField.level(field.getIntensity(1), 3));
+    assertEquals(1, SmellField.level(field.getIntensity(2), 3));
+
+    field = new SmellField(1, 3, doors, 2);
+    field.addOtyugh(0);
+    assertEquals("\nA less pungent smell is coming from nearby",
+        SmellField.describe(field.getIntensity(0), 2));
+    field.removeOtyugh(0);
+    field.addOtyugh(1);
+    assertEquals("\nA terrible smell is coming from nearby",
+        SmellField.describe(field.getIntensity(1), 2));
+  }
+
+  /**
+   * Test if the smell of every cave of an interconnected dungeon counts the otyughs one and two
+   * moves away once for every way of reaching them, so an otyugh reached through two caves smells
+   * terrible.
+   */
+  @Test
+  public void testSmellCountsEveryPath() {
+    DungeonModel model = new Dungeon(false, 6, 6, 12, 1L);
+    Location[][] grid = model.getLocationGrid();
+    SplittableRandom random = new SplittableRandom(1L);
+    for (int i = 0; i < 4; i++) {
+      Location cave = grid[random.nextInt(6)][random.nextInt(6)];
+      if (cave.getOtyugh() == null) {
+        model.assignOtyugh(cave);
+      }
+    }
+
+    for (int i = 0; i < 6; i++) {
+      for (int j = 0; j < 6; j++) {
+        int near = 0;
+        int far = 0;
+        for (Tunnel tunnel : grid[i][j].getTunnel()) {
+          Location neighbour = tunnel.getDestination();
+          near += neighbour.getOtyugh() == null ? 0 : 1;
+          for (Tunnel next : neighbour.getTunnel()) {
+            far += next.getDestination().getOtyugh() == null ? 0 : 1;
+          }
+        }
+
+        String smell = "";
+        if (near >= 1 || far > 1) {
+          smell = "\nA terrible smell is coming from nearby";
+        } else if (far == 1) {
+          smell = "\nA less pungent smell is coming from nearby";
+        }
+        assertTrue(grid[i][j].toString().startsWith(smell + "\nYou are in a cave"));
+      }
+    }
+  }
+
+  /**
+   * Test if a compact dungeon smells the same as a dungeon with the same seed and otyughs.
+   */
+  @Test
+  public void testCompactSmellField() {
+    DungeonModel model = new Dungeon(false, 8, 8, 6, 21L);
+    DungeonModel compact = new CompactDungeon(false, 8, 8, 6, 21L);
+    Location[][] grid = model.getLocationGrid();
+    Location[][] compactGrid = compact.getLocationGrid();
+    for (int i = 0; i < 8; i += 3) {
+      for (int j = 1; j < 8; j += 2) {
+        model.assignOtyugh(grid[i][j]);
+        compact.assignOtyugh(compactGrid[i][j]);
+      }
+    }
+    compact.getLocationGrid()[3][3].removeOtyugh();
+    model.getLocationGrid()[3][3].removeOtyugh();
+
+    for (int i = 0; i < 8; i++) {
+      for (int j = 0; j < 8; j++) {
+        assertEquals(model.getSmellIntensity(i, j), compact.getSmellIntensity(i, j));
+      }
+    }
+  }
+
+  /**
+   * Test if the neighbors and door mask of every cave agree with its possible moves.
+   */
+  @Test
+  public void testNeighborTable() {
+    for (Location[] row : model2.getLocationGrid()) {
+      for (Location location : row) {
+        for (Move move : Move.values()) {
+          boolean open = location.getPossibleMoves().contains(move.toString());
+          assertEquals(open, (location.getDoorMask() & move.getMask()) != 0);
+          if (open) {
+            assertEquals(location.getNextLocation(move), location.getNeighbor(move));
+            assertEquals(move, location.getTunnel(move).getDirection());
+          } else {
+            assertNull(location.getNeighbor(move));
+            assertNull(location.getTunnel(move));
+          }
+        }
+      }
+    }
+  }
 
 }